@@ -4,10 +4,12 @@ import com.vegstore.entity.User;
 import com.vegstore.entity.Supplier;
 import com.vegstore.entity.Product;
 import com.vegstore.entity.Purchase;
+import com.vegstore.entity.SearchSynonym;
 import com.vegstore.repository.UserRepository;
 import com.vegstore.repository.SupplierRepository;
 import com.vegstore.repository.ProductRepository;
 import com.vegstore.repository.PurchaseRepository;
+import com.vegstore.repository.SearchSynonymRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -17,6 +19,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Configuration
 @RequiredArgsConstructor
@@ -27,6 +30,7 @@ public class CreateAdminUser {
     private final SupplierRepository supplierRepository;
     private final ProductRepository productRepository;
     private final PurchaseRepository purchaseRepository;
+    private final SearchSynonymRepository searchSynonymRepository;
     private final PasswordEncoder passwordEncoder;
 
     @Bean
@@ -48,6 +52,9 @@ public class CreateAdminUser {
                 // Create Purchase Data for COGS calculations
                 createPurchaseData();
 
+                // Regional names customers search by
+                createSearchSynonyms();
+
                 log.info("Database Initialization Complete!");
                 printLoginCredentials();
             } else {
@@ -296,6 +303,24 @@ public class CreateAdminUser {
         log.info(" Created {} products", productRepository.count());
     }
 
+    private void createSearchSynonyms() {
+        log.info("Creating search synonyms...");
+        for (String words : List.of(
+                "tomato,tamatar",
+                "potato,aloo,batata",
+                "onion,pyaz,kanda",
+                "spinach,palak",
+                "capsicum,shimla,bellpepper",
+                "cabbage,patta,bandhgobi",
+                "cucumber,kheera,dosakaya",
+                "carrot,gajar",
+                "brinjal,eggplant,baingan,aubergine",
+                "okra,bhindi,ladyfinger")) {
+            searchSynonymRepository.save(SearchSynonym.builder().words(words).build());
+        }
+        log.info(" Created {} search synonym groups", searchSynonymRepository.count());
+    }
+
     private void createPurchaseData() {
         log.info("Creating purchase data for COGS calculations...");
 
@@ -6,6 +6,7 @@ import com.vegstore.service.*;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -16,11 +17,12 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,41 +39,44 @@ public class AdminController {
     private final OrderService orderService;
     private final UserService userService;
     private final AdminService adminService;
+    private final SalesRollupService salesRollupService;
+    private final OrderAnalyticsEngine analyticsEngine;
+    private final KpiService kpiService;
+    private final AbandonedCartSweeper cartSweeper;
+    private final CatalogService catalogService;
+    private final SearchSynonymService searchSynonymService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
     @GetMapping("/dashboard")
-    public String dashboard(Model model, @AuthenticationPrincipal User currentUser) {
-        model.addAttribute("totalProducts", productService.getAllProducts().size());
-        model.addAttribute("totalSuppliers", supplierService.getAllSuppliers().size());
-        model.addAttribute("pendingOrders", orderService.getPendingOrders().size());
-        model.addAttribute("totalUsers", userService.getAllUsers().size());
+    public String dashboard(Model model, @AuthenticationPrincipal UserPrincipal currentUser) {
+        model.addAllAttributes(kpiService.getDashboardCounts());
         model.addAttribute("currentUser", currentUser);
 
         return "admin/dashboard";
     }
 
     @GetMapping("/users")
-    public String usersManagement(Model model, @AuthenticationPrincipal User currentUser) {
+    public String usersManagement(@RequestParam(required = false) User.Role role,
+                                  @RequestParam(required = false) Boolean active,
+                                  @RequestParam(required = false) String after,
+                                  @RequestParam(required = false) Integer size,
+                                  Model model, @AuthenticationPrincipal UserPrincipal currentUser) {
+        model.addAttribute("roles", User.Role.values());
+        model.addAttribute("role", role);
+        model.addAttribute("active", active);
+        model.addAttribute("after", after);
         try {
             log.info("Starting users management endpoint...");
 
-            // Get ALL users (both active and inactive)
-            List<User> users = userRepository.findAll();
+            // Both active and inactive users unless filtered, a page at a time
+            KeysetPage<User> page = userService.getUserPage(role, active, after, KeysetPage.clampSize(size));
+            List<User> users = page.items();
             log.info("Found {} users", users.size());
 
-            Map<String, Long> userStats = new HashMap<>();
-            userStats.put("totalUsers", userRepository.count());
-            userStats.put("customers", userRepository.countByRole(User.Role.CUSTOMER));
-            userStats.put("salespersons", userRepository.countByRole(User.Role.SALESPERSON));
-            userStats.put("admins", userRepository.countByRole(User.Role.ADMIN));
-
-            // Add active user counts
-            userStats.put("activeUsers", userRepository.countByActiveTrue());
-            userStats.put("inactiveUsers", userRepository.countByActiveFalse());
-
             model.addAttribute("users", users);
-            model.addAttribute("userStats", userStats);
+            model.addAttribute("next", page.next());
+            model.addAttribute("userStats", kpiService.getUserStats());
             model.addAttribute("currentUser", currentUser);
 
             CsrfToken csrfToken = (CsrfToken) model.getAttribute("_csrf");
@@ -83,8 +88,11 @@ public class AdminController {
             log.info("Users management endpoint completed successfully");
             return "admin/admin-users";
 
+        } catch (InvalidCursorException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error in users management: ", e);
+            model.addAttribute("users", List.of());
             model.addAttribute("error", "Error loading users: " + e.getMessage());
             return "admin/admin-users";
         }
@@ -114,7 +122,7 @@ public class AdminController {
                     .createdAt(LocalDateTime.now())
                     .build();
 
-            userRepository.save(user);
+            userService.createUser(user);
             redirectAttributes.addFlashAttribute("success", "User created successfully");
         } catch (Exception e) {
             log.error("Error creating user: {}", e.getMessage());
@@ -127,8 +135,21 @@ public class AdminController {
     // ========== PRODUCTS ==========
 
     @GetMapping("/products")
-    public String products(Model model, @AuthenticationPrincipal User currentUser) {
-        model.addAttribute("products", productService.getAllProducts());
+    public String products(@RequestParam(required = false) String category,
+                           @RequestParam(required = false) Long supplierId,
+                           @RequestParam(required = false) String sort,
+                           @RequestParam(required = false) String after,
+                           @RequestParam(required = false) Integer size,
+                           Model model, @AuthenticationPrincipal UserPrincipal currentUser) {
+        KeysetPage<Product> page = productService.getProductPage(category, supplierId, sort, after,
+                KeysetPage.clampSize(size));
+        model.addAttribute("products", page.items());
+        model.addAttribute("next", page.next());
+        model.addAttribute("after", after);
+        model.addAttribute("category", category);
+        model.addAttribute("supplierId", supplierId);
+        model.addAttribute("sort", sort);
+        model.addAttribute("categories", productService.getCategories());
         model.addAttribute("suppliers", supplierService.getAllSuppliers());
         model.addAttribute("product", new Product());
         model.addAttribute("currentUser", currentUser);
@@ -211,14 +232,22 @@ public class AdminController {
     // ========== SUPPLIERS ==========
 
     @GetMapping("/suppliers")
-    public String suppliers(Model model, @AuthenticationPrincipal User currentUser) {
+    public String suppliers(@RequestParam(required = false) String after,
+                            @RequestParam(required = false) Integer size,
+                            Model model, @AuthenticationPrincipal UserPrincipal currentUser) {
+        model.addAttribute("after", after);
         try {
-            model.addAttribute("suppliers", supplierService.getAllSuppliers());
+            KeysetPage<Supplier> page = supplierService.getSupplierPage(after, KeysetPage.clampSize(size));
+            model.addAttribute("suppliers", page.items());
+            model.addAttribute("next", page.next());
             model.addAttribute("supplier", new Supplier());
             model.addAttribute("currentUser", currentUser);
             return "admin/suppliers";
+        } catch (InvalidCursorException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error loading suppliers: {}", e.getMessage());
+            model.addAttribute("suppliers", List.of());
             model.addAttribute("error", "Error loading suppliers: " + e.getMessage());
             return "admin/suppliers";
         }
@@ -293,10 +322,25 @@ public class AdminController {
     // ========== PURCHASES ==========
 
     @GetMapping("/purchases")
-    public String purchases(Model model, @AuthenticationPrincipal User currentUser) {
-        model.addAttribute("purchases", purchaseService.getAllPurchases());
+    public String purchases(@RequestParam(required = false) Long supplierId,
+                            @RequestParam(required = false) Long productId,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                            @RequestParam(required = false) String after,
+                            @RequestParam(required = false) Integer size,
+                            Model model, @AuthenticationPrincipal UserPrincipal currentUser) {
+        KeysetPage<Purchase> page = purchaseService.getPurchasePage(supplierId, productId, from, to, after,
+                KeysetPage.clampSize(size));
+        model.addAttribute("purchases", page.items());
+        model.addAttribute("next", page.next());
+        model.addAttribute("after", after);
+        model.addAttribute("supplierId", supplierId);
+        model.addAttribute("productId", productId);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
         model.addAttribute("suppliers", supplierService.getAllSuppliers());
-        model.addAttribute("products", productService.getAllProducts());
+        // Dropdowns only need names; the catalog snapshot has them without a query
+        model.addAttribute("products", catalogService.getAllProducts());
         model.addAttribute("purchase", new Purchase());
         model.addAttribute("currentUser", currentUser);
         return "admin/purchases";
@@ -343,16 +387,262 @@ public class AdminController {
         return adminService.getSalesTrend(days);
     }
 
+    @GetMapping("/api/sales-trend/hourly")
+    @ResponseBody
+    public Map<String, BigDecimal> getHourlySalesTrend(@RequestParam(defaultValue = "24") int hours) {
+        return salesRollupService.getHourlySalesTrend(hours);
+    }
+
+    @PostMapping("/api/sales-rollup/rebuild")
+    @ResponseBody
+    public Map<String, Object> rebuildSalesRollup() {
+        try {
+            int buckets = salesRollupService.rebuild();
+            return Map.of("success", true, "buckets", buckets);
+        } catch (Exception e) {
+            log.error("Error rebuilding sales rollup: {}", e.getMessage(), e);
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/sales-rollup/verify")
+    @ResponseBody
+    public Map<String, Object> verifySalesRollup() {
+        return salesRollupService.verify();
+    }
+
     @GetMapping("/api/salesperson-performance")
     @ResponseBody
     public Map<String, Long> getSalespersonPerformance() {
         return adminService.getSalespersonPerformance();
     }
 
+    @GetMapping("/api/salesperson-performance/details")
+    @ResponseBody
+    public List<SalespersonPerformanceService.Performance> getSalespersonPerformanceDetails() {
+        return adminService.getSalespersonPerformanceDetails();
+    }
+
+    @GetMapping("/api/commission/verify")
+    @ResponseBody
+    public Map<String, Object> verifyCommissionLedger() {
+        return adminService.verifyCommissionLedger();
+    }
+
+    @PostMapping("/api/commission/rebuild")
+    @ResponseBody
+    public Map<String, Object> rebuildCommissionLedger() {
+        try {
+            int salespeople = adminService.rebuildCommissionLedger();
+            return Map.of("success", true, "salespeople", salespeople);
+        } catch (Exception e) {
+            log.error("Error rebuilding commission ledger: {}", e.getMessage(), e);
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/cart-sweeper")
+    @ResponseBody
+    public Map<String, Object> getCartSweeperStats() {
+        return cartSweeper.getStats();
+    }
+
+    @PostMapping("/api/cart-sweeper/run")
+    @ResponseBody
+    public Map<String, Object> runCartSweeper() {
+        try {
+            int purged = cartSweeper.sweep();
+            if (purged < 0) {
+                return Map.of("success", false, "message", "A sweep is already running");
+            }
+            return Map.of("success", true, "purged", purged);
+        } catch (Exception e) {
+            log.error("Error sweeping abandoned carts: {}", e.getMessage(), e);
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/api/profit-analysis")
     @ResponseBody
-    public Map<String, BigDecimal> getProfitAnalysis() {
-        return adminService.getProfitAnalysis();
+    public Map<String, BigDecimal> getProfitAnalysis(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return adminService.getProfitAnalysis(from, to);
+    }
+
+    // ========== IN-MEMORY ANALYTICS (columnar order facts) ==========
+
+    @GetMapping("/api/analytics/sales-trend")
+    @ResponseBody
+    public Map<String, Object> getAnalyticsSalesTrend(@RequestParam(defaultValue = "30") int days) {
+        return analyticsEngine.salesTrend(days);
+    }
+
+    @GetMapping("/api/analytics/profit")
+    @ResponseBody
+    public Map<String, Object> getAnalyticsProfit(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analyticsEngine.profit(from, to);
+    }
+
+    @GetMapping("/api/analytics/products")
+    @ResponseBody
+    public Map<String, Object> getAnalyticsProducts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analyticsEngine.productReport(from, to);
+    }
+
+    @GetMapping("/api/analytics/salespeople")
+    @ResponseBody
+    public Map<String, Object> getAnalyticsSalespeople(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analyticsEngine.salespersonReport(from, to);
+    }
+
+    @GetMapping("/api/analytics/footprint")
+    @ResponseBody
+    public Map<String, Object> getAnalyticsFootprint() {
+        return analyticsEngine.footprint();
+    }
+
+    @GetMapping("/api/search/footprint")
+    @ResponseBody
+    public Map<String, Object> getSearchFootprint() {
+        return catalogService.getSearchFootprint();
+    }
+
+    // ========== PAGED LISTS ==========
+
+    @GetMapping("/api/products")
+    @ResponseBody
+    public Map<String, Object> getProductPage(@RequestParam(required = false) String category,
+                                              @RequestParam(required = false) Long supplierId,
+                                              @RequestParam(required = false) String sort,
+                                              @RequestParam(required = false) String after,
+                                              @RequestParam(required = false) Integer size) {
+        KeysetPage<Product> page = productService.getProductPage(category, supplierId, sort, after,
+                KeysetPage.clampSize(size));
+        return pageResponse(page.items().stream().map(product -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", product.getId());
+            row.put("name", product.getName());
+            row.put("category", product.getCategory());
+            row.put("retailPricePerKg", product.getRetailPricePerKg());
+            row.put("wholesalePricePerKg", product.getWholesalePricePerKg());
+            row.put("minWholesaleQuantityKg", product.getMinWholesaleQuantityKg());
+            row.put("stockKg", product.getStockKg());
+            row.put("supplierId", product.getSupplier() != null ? product.getSupplier().getId() : null);
+            row.put("supplierName", product.getSupplier() != null ? product.getSupplier().getName() : null);
+            return row;
+        }).toList(), page.next());
+    }
+
+    @GetMapping("/api/suppliers")
+    @ResponseBody
+    public Map<String, Object> getSupplierPage(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer size) {
+        KeysetPage<Supplier> page = supplierService.getSupplierPage(after, KeysetPage.clampSize(size));
+        return pageResponse(page.items(), page.next());
+    }
+
+    @GetMapping("/api/purchases")
+    @ResponseBody
+    public Map<String, Object> getPurchasePage(@RequestParam(required = false) Long supplierId,
+                                               @RequestParam(required = false) Long productId,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer size) {
+        KeysetPage<Purchase> page = purchaseService.getPurchasePage(supplierId, productId, from, to, after,
+                KeysetPage.clampSize(size));
+        return pageResponse(page.items().stream().map(purchase -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", purchase.getId());
+            row.put("purchaseDate", purchase.getPurchaseDate());
+            row.put("supplierId", purchase.getSupplier().getId());
+            row.put("supplierName", purchase.getSupplier().getName());
+            row.put("productId", purchase.getProduct().getId());
+            row.put("productName", purchase.getProduct().getName());
+            row.put("quantityKg", purchase.getQuantityKg());
+            row.put("costPerKg", purchase.getCostPerKg());
+            row.put("totalAmount", purchase.getTotalAmount());
+            return row;
+        }).toList(), page.next());
+    }
+
+    @GetMapping("/api/users")
+    @ResponseBody
+    public Map<String, Object> getUserPage(@RequestParam(required = false) User.Role role,
+                                           @RequestParam(required = false) Boolean active,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(required = false) Integer size) {
+        KeysetPage<User> page = userService.getUserPage(role, active, after, KeysetPage.clampSize(size));
+        // Never the password hash
+        return pageResponse(page.items().stream().map(user -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", user.getId());
+            row.put("fullName", user.getFullName());
+            row.put("username", user.getUsername());
+            row.put("role", user.getRole() != null ? user.getRole().name() : null);
+            row.put("wholesale", user.isWholesale());
+            row.put("active", user.getActive());
+            row.put("createdAt", user.getCreatedAt());
+            return row;
+        }).toList(), page.next());
+    }
+
+    private Map<String, Object> pageResponse(List<?> items, String next) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("items", items);
+        response.put("next", next);
+        return response;
+    }
+
+    // ========== SEARCH SYNONYMS ==========
+
+    @GetMapping("/api/search/synonyms")
+    @ResponseBody
+    public List<SearchSynonym> getSearchSynonyms() {
+        return searchSynonymService.getAllSynonyms();
+    }
+
+    @PostMapping("/api/search/synonyms")
+    @ResponseBody
+    public Map<String, Object> createSearchSynonym(@RequestParam String words) {
+        try {
+            SearchSynonym synonym = searchSynonymService.createSynonym(words);
+            return Map.of("success", true, "id", synonym.getId(), "words", synonym.getWords());
+        } catch (Exception e) {
+            log.error("Error creating search synonyms: {}", e.getMessage());
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/api/search/synonyms/{id}")
+    @ResponseBody
+    public Map<String, Object> updateSearchSynonym(@PathVariable Long id, @RequestParam String words) {
+        try {
+            SearchSynonym synonym = searchSynonymService.updateSynonym(id, words);
+            return Map.of("success", true, "id", synonym.getId(), "words", synonym.getWords());
+        } catch (Exception e) {
+            log.error("Error updating search synonyms {}: {}", id, e.getMessage());
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/api/search/synonyms/delete/{id}")
+    @ResponseBody
+    public Map<String, Object> deleteSearchSynonym(@PathVariable Long id) {
+        try {
+            searchSynonymService.deleteSynonym(id);
+            return Map.of("success", true);
+        } catch (Exception e) {
+            log.error("Error deleting search synonyms {}: {}", id, e.getMessage());
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
     }
 
     @GetMapping("/users/{id}/details")
@@ -400,23 +690,18 @@ public class AdminController {
                 return "redirect:/admin/users";
             }
 
-            user.setFullName(fullName);
-            user.setUsername(username);
-            user.setRole(role);
-
-            // Use the proper setter method
-            user.setIsWholesale(isWholesale != null ? isWholesale : false);
-
             // Update password only if provided
+            String encodedPassword = null;
             if (password != null && !password.trim().isEmpty()) {
                 if (password.length() < 3) {
                     redirectAttributes.addFlashAttribute("error", "Password must be at least 3 characters long");
                     return "redirect:/admin/users";
                 }
-                user.setPassword(passwordEncoder.encode(password));
+                encodedPassword = passwordEncoder.encode(password);
             }
 
-            userRepository.save(user);
+            userService.updateUser(id, fullName, username, role, isWholesale != null ? isWholesale : false,
+                    encodedPassword);
             redirectAttributes.addFlashAttribute("success", "User updated successfully");
 
         } catch (Exception e) {
@@ -430,7 +715,7 @@ public class AdminController {
 //    @Transactional
 //    @PostMapping("/users/toggle-status/{id}")
 //    public String toggleUserStatus(@PathVariable Long id,
-//                                   @AuthenticationPrincipal User currentUser,
+//                                   @AuthenticationPrincipal UserPrincipal currentUser,
 //                                   RedirectAttributes redirectAttributes) {
 //        log.info("Attempting to TOGGLE status for user with ID: {}", id);
 //
@@ -467,10 +752,9 @@ public class AdminController {
 //
 //        return "redirect:/admin/users";
 //    }
-@Transactional
 @PostMapping("/users/toggle-status/{id}")
 public String toggleUserStatus(@PathVariable Long id,
-                               @AuthenticationPrincipal User currentUser,
+                               @AuthenticationPrincipal UserPrincipal currentUser,
                                RedirectAttributes redirectAttributes) {
     log.info("Attempting to TOGGLE status for user with ID: {}", id);
 
@@ -495,12 +779,10 @@ public String toggleUserStatus(@PathVariable Long id,
 
         // Toggle status
         boolean newStatus = !user.getActive();
-        user.setActive(newStatus);
-
-        userRepository.save(user);
+        userService.setActive(id, newStatus);
 
         // Debug: log new status
-        log.info("User {} new active status: {}", user.getUsername(), user.getActive());
+        log.info("User {} new active status: {}", user.getUsername(), newStatus);
 
         String action = newStatus ? "activated" : "deactivated";
         log.info("User {} successfully {}.", user.getUsername(), action);
@@ -514,7 +796,7 @@ public String toggleUserStatus(@PathVariable Long id,
     return "redirect:/admin/users";
 }
     @PostMapping("/users/delete/{id}")
-    public String deleteUser(@PathVariable Long id, @AuthenticationPrincipal User currentUser, RedirectAttributes redirectAttributes) {
+    public String deleteUser(@PathVariable Long id, @AuthenticationPrincipal UserPrincipal currentUser, RedirectAttributes redirectAttributes) {
         User userToDelete = userRepository.findById(id).orElse(null);
         if (userToDelete == null) {
             redirectAttributes.addFlashAttribute("error", "User not found.");
@@ -531,7 +813,7 @@ public String toggleUserStatus(@PathVariable Long id,
             return "redirect:/admin/users";
         }
 
-        userRepository.delete(userToDelete);
+        userService.deleteUser(id);
         redirectAttributes.addFlashAttribute("success", "User deleted successfully.");
         return "redirect:/admin/users";
     }
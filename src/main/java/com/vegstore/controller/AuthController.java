@@ -69,7 +69,7 @@ package com.vegstore.controller;
 
 import com.vegstore.entity.User;
 import com.vegstore.service.UserService;
-import com.vegstore.service.CustomUserDetailsService;
+import com.vegstore.service.CurrentUserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -86,7 +86,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final UserService userService;
-    private final CustomUserDetailsService userDetailsService;
+    private final CurrentUserService currentUserService;
 
     @GetMapping("/login")
     public String login(@RequestParam(required = false) String error,
@@ -153,7 +153,7 @@ public class AuthController {
         log.info("Dashboard access by: {}", username);
 
         try {
-            User user = userDetailsService.getUserByUsername(username);
+            User user = currentUserService.getUser();
             log.info("Redirecting {} to {} dashboard", username, user.getRole());
 
             return switch (user.getRole()) {
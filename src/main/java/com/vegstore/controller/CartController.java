@@ -1,14 +1,12 @@
 package com.vegstore.controller;
 
-import com.vegstore.entity.Cart;
 import com.vegstore.entity.User;
-import com.vegstore.repository.UserRepository;
+import com.vegstore.service.CartCache;
 import com.vegstore.service.CartService;
+import com.vegstore.service.CurrentUserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -24,22 +22,19 @@ import java.util.Map;
 public class CartController {
 
     private final CartService cartService;
-    private final UserRepository userRepository;
+    private final CurrentUserService currentUserService;
 
     private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        return currentUserService.getUser();
     }
 
     @GetMapping("/cart")
     @PreAuthorize("hasRole('CUSTOMER')")
     public String cart(Model model) {
         User user = getCurrentUser();
-        Cart cart = cartService.getCart(user);
+        CartCache.CartView cart = cartService.getCart(user);
         model.addAttribute("cart", cart);
-        model.addAttribute("cartItems", cart.getItems());
+        model.addAttribute("cartItems", cart.lines());
         return "cart";
     }
 
@@ -53,7 +48,7 @@ public class CartController {
         try {
             User user = getCurrentUser();
             log.info("Adding product {} to cart for user {}", productId, user.getUsername());
-            Cart cart = cartService.addItemToCart(user, productId, quantity);
+            CartCache.CartView cart = cartService.addItemToCart(user, productId, quantity);
             return buildCartResponse(cart, "Item added to cart", true);
         } catch (Exception e) {
             log.error("Error adding to cart: {}", e.getMessage(), e);
@@ -71,7 +66,7 @@ public class CartController {
         try {
             User user = getCurrentUser();
             log.info("Updating product {} quantity to {} for user {}", productId, quantity, user.getUsername());
-            Cart cart = cartService.updateItemQuantity(user, productId, quantity);
+            CartCache.CartView cart = cartService.updateItemQuantity(user, productId, quantity);
             return buildCartResponse(cart, "Cart updated", true);
         } catch (Exception e) {
             log.error("Error updating cart: {}", e.getMessage(), e);
@@ -87,8 +82,7 @@ public class CartController {
         try {
             User user = getCurrentUser();
             log.info("Removing product {} from cart for user {}", productId, user.getUsername());
-            cartService.removeItemFromCart(user, productId);
-            Cart cart = cartService.getCart(user);
+            CartCache.CartView cart = cartService.removeItemFromCart(user, productId);
             return buildCartResponse(cart, "Item removed", true);
         } catch (Exception e) {
             log.error("Error removing from cart: {}", e.getMessage(), e);
@@ -96,6 +90,24 @@ public class CartController {
         }
     }
 
+    /** Several add/update/remove edits in one request, e.g. {"operations":[{"type":"ADD","productId":1,"quantity":0.5}]}. */
+    @PostMapping("/cart/batch")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    @ResponseBody
+    public Map<String, Object> batchUpdate(@RequestBody BatchRequest request) {
+
+        try {
+            User user = getCurrentUser();
+            log.info("Applying {} cart operations for user {}", request.operations() != null ? request.operations().size() : 0,
+                    user.getUsername());
+            CartCache.CartView cart = cartService.applyBatch(user, request.operations());
+            return buildCartResponse(cart, "Cart updated", true);
+        } catch (Exception e) {
+            log.error("Error applying cart batch: {}", e.getMessage(), e);
+            return Map.of("success", false, "message", "Error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/cart/clear")
     @PreAuthorize("hasRole('CUSTOMER')")
     public String clearCart(RedirectAttributes redirectAttributes) {
@@ -117,20 +129,32 @@ public class CartController {
     public Map<String, Object> getCartCount() {
         try {
             User user = getCurrentUser();
-            Cart cart = cartService.getCart(user);
-            return Map.of("success", true, "itemCount", cart.getItems().size());
+            return Map.of("success", true, "itemCount", cartService.getSummary(user.getId()).itemCount());
         } catch (Exception e) {
             return Map.of("success", false, "itemCount", 0);
         }
     }
 
+    @GetMapping("/cart/summary")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    @ResponseBody
+    public Map<String, Object> getCartSummary() {
+        try {
+            User user = getCurrentUser();
+            CartCache.CartSummary summary = cartService.getSummary(user.getId());
+            return Map.of("success", true, "itemCount", summary.itemCount(), "total", summary.total());
+        } catch (Exception e) {
+            return Map.of("success", false, "itemCount", 0, "total", 0);
+        }
+    }
+
     @GetMapping("/cart/data")
     @PreAuthorize("hasRole('CUSTOMER')")
     @ResponseBody
     public Map<String, Object> getCartData() {
         try {
             User user = getCurrentUser();
-            Cart cart = cartService.getCart(user);
+            CartCache.CartView cart = cartService.getCart(user);
             return buildCartResponse(cart, null, true);
         } catch (Exception e) {
             log.error("Error getting cart data: {}", e.getMessage(), e);
@@ -138,17 +162,19 @@ public class CartController {
         }
     }
 
-    private Map<String, Object> buildCartResponse(Cart cart, String message, boolean success) {
-        List<Map<String, Object>> items = cart.getItems().stream()
-                .map(item -> {
+    public record BatchRequest(List<CartCache.Operation> operations) {
+    }
+
+    private Map<String, Object> buildCartResponse(CartCache.CartView cart, String message, boolean success) {
+        List<Map<String, Object>> items = cart.lines().stream()
+                .map(line -> {
                     Map<String, Object> itemMap = new HashMap<>();
-                    itemMap.put("id", item.getId());
-                    itemMap.put("productId", item.getProduct().getId());
-                    itemMap.put("name", item.getProduct().getName());
-                    itemMap.put("quantity", item.getQuantity());
-                    itemMap.put("price", item.getPriceAtTime());
-                    itemMap.put("imageUrl", item.getProduct().getImageUrl());
-                    itemMap.put("stockKg", item.getProduct().getStockKg());
+                    itemMap.put("productId", line.product().id());
+                    itemMap.put("name", line.product().name());
+                    itemMap.put("quantity", line.quantity());
+                    itemMap.put("price", line.price());
+                    itemMap.put("imageUrl", line.product().imageUrl());
+                    itemMap.put("stockKg", line.product().stockKg());
                     return itemMap;
                 })
                 .toList();
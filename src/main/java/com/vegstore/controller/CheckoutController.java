@@ -2,21 +2,27 @@ package com.vegstore.controller;
 
 import com.vegstore.entity.Order;
 import com.vegstore.entity.User;
-import com.vegstore.repository.UserRepository;
-import com.vegstore.service.OrderService;
+import com.vegstore.service.CurrentUserService;
+import com.vegstore.service.IdempotencyService;
+import com.vegstore.service.OrderIntakeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
 @Controller
 @RequestMapping("/checkout")
 @PreAuthorize("hasRole('CUSTOMER')")
@@ -24,15 +30,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @Slf4j
 public class CheckoutController {
 
-    private final UserRepository userRepository;
-    private final OrderService orderService;
+    private final CurrentUserService currentUserService;
+    private final OrderIntakeService orderIntakeService;
+    private final IdempotencyService idempotencyService;
 
     private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        log.info("Getting current user: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        User user = currentUserService.getUser();
         log.info("Found user: ID={}, Username={}, Role={}", user.getId(), user.getUsername(), user.getRole());
         return user;
     }
@@ -42,6 +45,8 @@ public class CheckoutController {
         try {
             User user = getCurrentUser();
             model.addAttribute("currentUser", user);
+            // One key per rendered form: double-clicks and browser retries resubmit the same key
+            model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
             log.info("Checkout page loaded for user: {}", user.getUsername());
             return "checkout";
         } catch (Exception e) {
@@ -59,7 +64,7 @@ public class CheckoutController {
             @RequestParam String pincode,
             @RequestParam(required = false) String deliveryNotes,
             @RequestParam String paymentMethod,
-            @RequestParam String cartData,
+            @RequestParam(required = false) String idempotencyKey,
             RedirectAttributes redirectAttributes) {
 
         try {
@@ -73,30 +78,30 @@ public class CheckoutController {
             log.info("City: {}", city);
             log.info("Pincode: {}", pincode);
             log.info("Payment Method: {}", paymentMethod);
-            log.info("Cart Data Length: {}", cartData != null ? cartData.length() : 0);
-            log.info("Cart Data: {}", cartData);
-
-            // Validate cart data
-            if (cartData == null || cartData.trim().isEmpty() || cartData.equals("[]")) {
-                log.error("Cart data is empty!");
-                redirectAttributes.addFlashAttribute("error", "Your cart is empty!");
-                return "redirect:/cart";
+
+            // Create the order from the customer's cart as submitted. A repeated key replays the
+            // first result instead of placing (and reserving stock for) a second order.
+            PlacedOrder order;
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                order = createOrder(user, customerName, customerPhone, deliveryAddress, city, pincode, deliveryNotes, paymentMethod);
+            } else {
+                order = idempotencyService.execute(user.getId() + ":" + idempotencyKey,
+                        () -> createOrder(user, customerName, customerPhone, deliveryAddress, city, pincode, deliveryNotes, paymentMethod));
             }
 
-            // Create the order
-            Order order = orderService.createOrder(
-                    user, customerName, customerPhone, deliveryAddress,
-                    city, pincode, deliveryNotes, paymentMethod, cartData
-            );
+            if (order.reference() != null) {
+                log.info("=== ORDER ACCEPTED FOR INTAKE: {} ===", order.reference());
+                redirectAttributes.addFlashAttribute("success", "Order received! We're confirming it now.");
+                redirectAttributes.addFlashAttribute("pendingReference", order.reference());
+                return "redirect:/my-orders";
+            }
 
             log.info("=== ORDER CREATED SUCCESSFULLY ===");
-            log.info("Order ID: {}", order.getId());
-            log.info("Order Total: ₹{}", order.getTotalAmount());
-            log.info("Order Items: {}", order.getOrderItems().size());
-            log.info("Order Status: {}", order.getStatus());
+            log.info("Order ID: {}", order.id());
+            log.info("Order Total: ₹{}", order.totalAmount());
 
             redirectAttributes.addFlashAttribute("success",
-                    "Order #" + order.getId() + " placed successfully! Total: ₹" + order.getTotalAmount());
+                    "Order #" + order.id() + " placed successfully! Total: ₹" + order.totalAmount());
 
             log.info("Redirecting to /my-orders");
             return "redirect:/my-orders";
@@ -109,4 +114,45 @@ public class CheckoutController {
             return "redirect:/checkout";
         }
     }
+
+    // Pending-order status for an order accepted by the asynchronous intake
+    @GetMapping("/intake/{reference}")
+    @ResponseBody
+    public Map<String, Object> intakeStatus(@PathVariable String reference) {
+        User user = getCurrentUser();
+        Map<String, Object> response = new HashMap<>();
+        orderIntakeService.getIntake(reference, user.getId()).ifPresentOrElse(intake -> {
+            response.put("success", true);
+            response.put("status", intake.state().name());
+            response.put("orderId", intake.orderId());
+            response.put("totalAmount", intake.totalAmount());
+            response.put("message", intake.message());
+        }, () -> {
+            response.put("success", false);
+            response.put("message", "Unknown order reference");
+        });
+        return response;
+    }
+
+    private PlacedOrder createOrder(User user, String customerName, String customerPhone, String deliveryAddress,
+                                    String city, String pincode, String deliveryNotes, String paymentMethod) {
+        // The intake takes the cart's lines as they are now; the order is built from those
+        if (orderIntakeService.isAsync()) {
+            OrderIntakeService.Intake intake = orderIntakeService.submit(
+                    user, customerName, customerPhone, deliveryAddress,
+                    city, pincode, deliveryNotes, paymentMethod
+            );
+            return new PlacedOrder(null, null, intake.reference());
+        }
+
+        Order order = orderIntakeService.placeNow(
+                user, customerName, customerPhone, deliveryAddress,
+                city, pincode, deliveryNotes, paymentMethod
+        );
+        return new PlacedOrder(order.getId(), order.getTotalAmount(), null);
+    }
+
+    // What a replayed request needs to render the same confirmation; reference is set for queued orders
+    private record PlacedOrder(Long id, BigDecimal totalAmount, String reference) {
+    }
 }
@@ -2,13 +2,11 @@ package com.vegstore.controller;
 
 import com.vegstore.entity.Order;
 import com.vegstore.entity.User;
-import com.vegstore.repository.UserRepository;
+import com.vegstore.service.CurrentUserService;
 import com.vegstore.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,15 +19,11 @@ import java.util.List;
 @Slf4j
 public class CustomerController {
 
-    private final UserRepository userRepository;
+    private final CurrentUserService currentUserService;
     private final OrderService orderService;
 
     private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        log.info("Getting current user for my-orders: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        User user = currentUserService.getUser();
         log.info("Found user: ID={}, Username={}", user.getId(), user.getUsername());
         return user;
     }
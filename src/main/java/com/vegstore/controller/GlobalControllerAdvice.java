@@ -33,40 +33,68 @@
 package com.vegstore.controller;
 
 import com.vegstore.entity.User;
-import com.vegstore.service.CustomUserDetailsService;
+import com.vegstore.service.CartCache;
+import com.vegstore.service.CartService;
+import com.vegstore.service.CurrentUserService;
+import com.vegstore.service.InvalidCursorException;
+import com.vegstore.service.UserPrincipal;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
 
 @ControllerAdvice
 @RequiredArgsConstructor
 @Slf4j
 public class GlobalControllerAdvice {
 
-    private final CustomUserDetailsService userDetailsService;
+    private final CurrentUserService currentUserService;
+    private final CartService cartService;
 
     @ModelAttribute("currentUser")
     public User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        User user = currentUserService.findUser();
+        if (user != null) {
+            log.debug("Current user loaded: {} ({})", user.getUsername(), user.getRole());
+        }
+        return user;
+    }
 
-        if (authentication != null
-                && authentication.isAuthenticated()
-                && !authentication.getPrincipal().equals("anonymousUser")
-                && !authentication.getName().equals("anonymousUser")) {
+    // Rendered into the navigation badge so pages don't have to fetch the cart
+    @ModelAttribute("cartSummary")
+    public CartCache.CartSummary getCartSummary() {
+        UserPrincipal principal = currentUserService.getPrincipal();
+        if (principal == null || principal.getRole() != User.Role.CUSTOMER) {
+            return null;
+        }
+        return cartService.getSummary(principal.getId());
+    }
 
-            String username = authentication.getName();
-            try {
-                User user = userDetailsService.getUserByUsername(username);
-                log.debug("Current user loaded: {} ({})", user.getUsername(), user.getRole());
-                return user;
-            } catch (Exception e) {
-                log.debug("No authenticated user found");
-                return null;
-            }
+    // A stale or hand-edited cursor: JSON callers get a 400, pages go back to their first page
+    @ExceptionHandler(InvalidCursorException.class)
+    public Object handleInvalidCursor(InvalidCursorException e, HandlerMethod handler,
+                                      HttpServletRequest request, RedirectAttributes redirectAttributes) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        log.warn("Bad page cursor on {}: '{}'", path, request.getParameter("after"));
+        if (handler.hasMethodAnnotation(ResponseBody.class)
+                || AnnotatedElementUtils.hasAnnotation(handler.getBeanType(), ResponseBody.class)) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        return null;
+        redirectAttributes.addFlashAttribute("error", e.getMessage() + ", showing the first page");
+        return "redirect:" + UriComponentsBuilder.fromPath(path)
+                .query(request.getQueryString())
+                .replaceQueryParam("after")
+                .build()
+                .toUriString();
     }
 }
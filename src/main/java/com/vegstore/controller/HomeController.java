@@ -1,44 +1,86 @@
 package com.vegstore.controller;
 
-import com.vegstore.entity.Product;
-import com.vegstore.service.ProductService;
+import com.vegstore.service.CatalogProduct;
+import com.vegstore.service.CatalogService;
+import com.vegstore.service.CatalogService.ProductSort;
+import com.vegstore.service.KeysetPage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequiredArgsConstructor
 public class HomeController {
 
-    private final ProductService productService;
+    private final CatalogService catalogService;
 
     @GetMapping("/")
     public String home(Model model) {
-        List<Product> products = productService.getAvailableProducts();
+        List<CatalogProduct> products = catalogService.getAvailableProducts();
         model.addAttribute("products", products);
         return "index";
     }
 
     @GetMapping("/products")
-    public String products(@RequestParam(required = false) String search, Model model) {
-        List<Product> products;
+    public String products(@RequestParam(required = false) String search,
+                           @RequestParam(required = false) String category,
+                           @RequestParam(required = false) String sort,
+                           @RequestParam(required = false) String after,
+                           @RequestParam(required = false) Integer size,
+                           Model model) {
+        ProductSort order = ProductSort.parse(sort);
 
         if (search != null && !search.isEmpty()) {
-            products = productService.searchProducts(search);
+            // Ranked and capped by the search index; not paged
+            model.addAttribute("products", catalogService.search(search));
         } else {
-            products = productService.getAllProducts();
+            KeysetPage<CatalogProduct> page = catalogService.getProductPage(category, order, after,
+                    KeysetPage.clampSize(size));
+            model.addAttribute("products", page.items());
+            model.addAttribute("next", page.next());
         }
 
-        model.addAttribute("products", products);
         model.addAttribute("search", search);
+        model.addAttribute("category", category);
+        model.addAttribute("sort", order.value());
+        model.addAttribute("after", after);
+        model.addAttribute("categories", catalogService.getCategories());
         return "products";
     }
 
+    @GetMapping("/products/page")
+    @ResponseBody
+    public KeysetPage<CatalogProduct> productPage(@RequestParam(required = false) String category,
+                                                  @RequestParam(required = false) String sort,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(required = false) Integer size) {
+        return catalogService.getProductPage(category, ProductSort.parse(sort), after, KeysetPage.clampSize(size));
+    }
+
+    // Typeahead for the search box; served from the catalog snapshot, never the database
+    @GetMapping("/products/suggest")
+    @ResponseBody
+    public List<Map<String, Object>> suggest(@RequestParam(defaultValue = "") String q,
+                                             @RequestParam(defaultValue = "8") int limit) {
+        return catalogService.suggest(q, limit).stream().map(product -> {
+            Map<String, Object> suggestion = new LinkedHashMap<>();
+            suggestion.put("id", product.getId());
+            suggestion.put("name", product.getName());
+            suggestion.put("category", product.getCategory());
+            suggestion.put("retailPricePerKg", product.getRetailPricePerKg());
+            suggestion.put("imageUrl", product.getImageUrl());
+            suggestion.put("inStock", product.isInStock());
+            return suggestion;
+        }).toList();
+    }
+
     @GetMapping("/products/{id}")
     public String productDetail(@PathVariable Long id, Model model) {
-        Product product = productService.getProductById(id);
+        CatalogProduct product = catalogService.getProduct(id);
         model.addAttribute("product", product);
         return "product-detail";
     }
@@ -2,15 +2,16 @@ package com.vegstore.controller;
 
 import com.vegstore.entity.Order;
 import com.vegstore.entity.User;
-import com.vegstore.repository.UserRepository;
+import com.vegstore.service.CurrentUserService;
+import com.vegstore.service.OrderEventBus;
 import com.vegstore.service.SalespersonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
@@ -23,39 +24,45 @@ import java.util.List;
 public class SalespersonController {
 
     private final SalespersonService salespersonService;
-    private final UserRepository userRepository;
+    private final CurrentUserService currentUserService;
+    private final OrderEventBus orderEventBus;
 
     /**
      * Helper method to get the currently authenticated user.
      */
     private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        log.info("Getting current user for sales dashboard: {}", username);
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        return currentUserService.getUser();
     }
 
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
         User currentUser = getCurrentUser();
+        // Taken before the queries so the live feed replays anything committed while the page renders
+        String streamEventId = orderEventBus.currentEventId();
         List<Order> availableOrders = salespersonService.getAvailableOrders();
         List<Order> myOrders = salespersonService.getMySalesOrders(currentUser);
 
-        // Calculate total salary (10% for completed orders assigned to this user)
-        BigDecimal salaryAmount = myOrders.stream()
-                .filter(order -> order.getStatus() == Order.OrderStatus.COMPLETED)
-                .map(order -> order.getTotalAmount().multiply(BigDecimal.valueOf(0.1)))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Salary (10% of completed orders assigned to this user), read from the commission ledger
+        BigDecimal salaryAmount = salespersonService.getEarnedCommission(currentUser);
 
         model.addAttribute("availableOrders", availableOrders);
         model.addAttribute("myOrders", myOrders);
         model.addAttribute("salaryAmount", salaryAmount); // <----- Important
         model.addAttribute("currentUser", currentUser);
+        model.addAttribute("streamEventId", streamEventId);
 
         return "sales/dashboard";
     }
 
+    /**
+     * Live feed of new, claimed and status-changed orders. Browsers send Last-Event-ID on
+     * reconnect; the first connect passes the position the page was rendered at.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                             @RequestParam(value = "lastEventId", required = false) String renderedAt) {
+        return orderEventBus.subscribe(lastEventId != null ? lastEventId : renderedAt);
+    }
 
     @PostMapping("/claim-order/{orderId}")
     public String claimOrder(@PathVariable Long orderId, RedirectAttributes redirectAttributes) {
@@ -71,6 +78,20 @@ public class SalespersonController {
         return "redirect:/sales/dashboard";
     }
 
+    @PostMapping("/claim-next")
+    public String claimNextOrder(RedirectAttributes redirectAttributes) {
+        User currentUser = getCurrentUser();
+
+        try {
+            salespersonService.claimNextOrder(currentUser);
+            redirectAttributes.addFlashAttribute("claimed", true);
+        } catch (Exception e) {
+            log.error("Error claiming next order: {}", e.getMessage());
+            redirectAttributes.addFlashAttribute("error", "Could not claim an order: " + e.getMessage());
+        }
+        return "redirect:/sales/dashboard";
+    }
+
     @PostMapping("/update-order-status")
     public String updateOrderStatus(@RequestParam Long orderId,
                                     @RequestParam Order.OrderStatus status,
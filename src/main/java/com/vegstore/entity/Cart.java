@@ -4,10 +4,15 @@ import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,10 +21,11 @@ import java.util.List;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_seq")
+    @SequenceGenerator(name = "cart_seq", sequenceName = "carts_seq", allocationSize = 50)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
@@ -33,6 +39,12 @@ public class Cart {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Items by product ID, built on first lookup and kept in step by the item helpers below
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItem> itemsByProductId;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -47,15 +59,47 @@ public class Cart {
     public void addItem(CartItem item) {
         items.add(item);
         item.setCart(this);
+        if (itemsByProductId != null) {
+            itemsByProductId.put(item.getProduct().getId(), item);
+        }
     }
 
     public void removeItem(CartItem item) {
         items.remove(item);
         item.setCart(null);
+        if (itemsByProductId != null) {
+            itemsByProductId.remove(item.getProduct().getId(), item);
+        }
     }
 
     public void clearItems() {
         items.forEach(item -> item.setCart(null));
         items.clear();
+        itemsByProductId = null;
+    }
+
+    /** The line for a product, or null; O(1) however many lines the cart has. */
+    public CartItem findItem(Long productId) {
+        if (itemsByProductId == null) {
+            itemsByProductId = new HashMap<>();
+            for (CartItem item : items) {
+                itemsByProductId.put(item.getProduct().getId(), item);
+            }
+        }
+        return itemsByProductId.get(productId);
+    }
+
+    /** Drops every line whose product is not in {@code productIds}, plus any duplicate line for a product. */
+    public void retainItems(Collection<Long> productIds) {
+        Set<Long> kept = new HashSet<>();
+        items.removeIf(item -> {
+            Long productId = item.getProduct().getId();
+            if (productIds.contains(productId) && kept.add(productId)) {
+                return false;
+            }
+            item.setCart(null);
+            return true;
+        });
+        itemsByProductId = null;
     }
 }
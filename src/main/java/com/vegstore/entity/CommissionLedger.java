@@ -0,0 +1,39 @@
+package com.vegstore.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Durable per-salesperson totals of completed-order revenue, in paise. Commission is derived from
+ * it; the in-memory side lives in {@link com.vegstore.service.CommissionLedgerService}.
+ */
+@Entity
+@Table(name = "commission_ledger")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommissionLedger {
+
+    @Id
+    @Column(name = "salesperson_id")
+    private Long salespersonId;
+
+    @Column(name = "completed_revenue_paise", nullable = false)
+    @Builder.Default
+    private Long completedRevenuePaise = 0L;
+
+    @Column(name = "completed_orders", nullable = false)
+    @Builder.Default
+    private Long completedOrders = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
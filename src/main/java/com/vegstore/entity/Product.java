@@ -72,7 +72,12 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+// Keyset listings sort by (name, id), optionally within a category or supplier
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_name", columnList = "name, id"),
+        @Index(name = "idx_products_category_name", columnList = "category, name, id"),
+        @Index(name = "idx_products_supplier_name", columnList = "supplier_id, name, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -80,7 +85,8 @@ import java.time.LocalDateTime;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Product name is required")
@@ -7,7 +7,12 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "purchases")
+// Keyset listings sort newest first by (purchase_date, id), optionally within a supplier or product
+@Table(name = "purchases", indexes = {
+        @Index(name = "idx_purchases_date", columnList = "purchase_date, id"),
+        @Index(name = "idx_purchases_supplier_date", columnList = "supplier_id, purchase_date, id"),
+        @Index(name = "idx_purchases_product_date", columnList = "product_id, purchase_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,7 +20,8 @@ import java.time.LocalDateTime;
 public class Purchase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_seq")
+    @SequenceGenerator(name = "purchase_seq", sequenceName = "purchases_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
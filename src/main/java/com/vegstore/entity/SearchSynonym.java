@@ -0,0 +1,29 @@
+package com.vegstore.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+/**
+ * A group of interchangeable search words, e.g. "brinjal, eggplant, baingan"; searching for any of
+ * them also finds products described with the others.
+ */
+@Entity
+@Table(name = "search_synonyms")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchSynonym {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "search_synonym_seq")
+    @SequenceGenerator(name = "search_synonym_seq", sequenceName = "search_synonyms_seq", allocationSize = 50)
+    private Long id;
+
+    // Comma-separated single words, stored lowercase
+    @NotBlank(message = "Synonym words are required")
+    @Column(nullable = false, length = 500)
+    private String words;
+}
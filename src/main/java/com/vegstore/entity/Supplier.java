@@ -6,7 +6,7 @@ import jakarta.validation.constraints.*;
 import lombok.*;
 
 @Entity
-@Table(name = "suppliers")
+@Table(name = "suppliers", indexes = @Index(name = "idx_suppliers_name", columnList = "name, id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,7 +16,8 @@ import lombok.*;
 public class Supplier {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "supplier_seq")
+    @SequenceGenerator(name = "supplier_seq", sequenceName = "suppliers_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Supplier name is required")
@@ -7,7 +7,11 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+// Keyset listings sort by username, optionally within a role or active flag
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_role_username", columnList = "role, username"),
+        @Index(name = "idx_users_active_username", columnList = "active, username")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,7 +20,8 @@ import java.time.LocalDateTime;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Username is required")
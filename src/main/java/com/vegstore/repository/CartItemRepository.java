@@ -2,8 +2,17 @@ package com.vegstore.repository;
 
 import com.vegstore.entity.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    @Modifying
+    @Query("DELETE FROM CartItem i WHERE i.cart.id IN :cartIds")
+    int deleteAllByCartIdIn(@Param("cartIds") Collection<Long> cartIds);
 }
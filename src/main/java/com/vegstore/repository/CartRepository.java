@@ -2,12 +2,59 @@ package com.vegstore.repository;
 
 import com.vegstore.entity.Cart;
 import com.vegstore.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
     Optional<Cart> findByUserId(Long userId);
+
+    // Cart, items and their products in a single round trip
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product WHERE c.user.id = :userId")
+    Optional<Cart> findWithItemsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product WHERE c.user.id IN :userIds")
+    List<Cart> findAllWithItemsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    // Aggregated in the database so a badge never loads the cart
+    @Query("SELECT COUNT(DISTINCT i.product.id) AS itemCount, COALESCE(SUM(i.quantity * i.priceAtTime), 0.0) AS total " +
+            "FROM CartItem i WHERE i.cart.user.id = :userId")
+    CartTotals getTotals(@Param("userId") Long userId);
+
+    // Keyset page over idx_carts_updated_at of carts untouched since the cutoff: [cartId, userId, updatedAt]
+    @Query("SELECT c.id, c.user.id, c.updatedAt FROM Cart c WHERE c.updatedAt < :cutoff " +
+            "AND (c.updatedAt > :afterUpdatedAt OR (c.updatedAt = :afterUpdatedAt AND c.id > :afterId)) " +
+            "ORDER BY c.updatedAt, c.id")
+    List<Object[]> findIdleAfter(@Param("cutoff") LocalDateTime cutoff,
+                                 @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+                                 @Param("afterId") Long afterId,
+                                 Pageable pageable);
+
+    // Re-checks idleness under a row lock; carts being written back right now are skipped, not waited for
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM Cart c WHERE c.id IN :ids AND c.updatedAt < :cutoff")
+    List<Cart> lockIdle(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    // Marks a cart in use as it is loaded into memory, taking it out of the sweep; 0 if the sweep already deleted it
+    @Modifying
+    @Query("UPDATE Cart c SET c.updatedAt = :now WHERE c.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,11 @@
+package com.vegstore.repository;
+
+/**
+ * Projection of {@link CartRepository#getTotals}: line count and total of one customer's cart.
+ */
+public interface CartTotals {
+
+    Long getItemCount();
+
+    Double getTotal();
+}
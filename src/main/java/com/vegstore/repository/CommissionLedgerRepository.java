@@ -0,0 +1,21 @@
+package com.vegstore.repository;
+
+import com.vegstore.entity.CommissionLedger;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CommissionLedgerRepository extends JpaRepository<CommissionLedger, Long> {
+
+    // Adds one flush's delta to a salesperson's running totals; 0 until their first flush inserts the row
+    @Modifying
+    @Query(value = "UPDATE commission_ledger SET completed_revenue_paise = completed_revenue_paise + :revenuePaise, " +
+            "completed_orders = completed_orders + :orders, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE salesperson_id = :salespersonId", nativeQuery = true)
+    int addToLedger(@Param("salespersonId") Long salespersonId,
+                    @Param("revenuePaise") long revenuePaise,
+                    @Param("orders") long orders);
+}
@@ -2,8 +2,14 @@ package com.vegstore.repository;
 
 import com.vegstore.entity.Order;
 import com.vegstore.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
@@ -14,10 +20,65 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByCustomerOrderByCreatedAtDesc(User customer);
     List<Order> findBySalespersonOrderByCreatedAtDesc(User salesperson);
     List<Order> findByStatusOrderByCreatedAtDesc(Order.OrderStatus status);
+    long countByStatus(Order.OrderStatus status);
 
     @Query("SELECT o FROM Order o WHERE o.createdAt >= :startDate ORDER BY o.createdAt DESC")
     List<Order> findOrdersAfterDate(@Param("startDate") LocalDateTime startDate);
 
-    @Query("SELECT o.salesperson, COUNT(o) FROM Order o WHERE o.salesperson IS NOT NULL AND o.status != 'CANCELLED' GROUP BY o.salesperson")
-    List<Object[]> getSalespersonPerformance();
+    // Completed-order stats per salesperson, aggregated in the database
+    @Query("SELECT s.id AS salespersonId, s.fullName AS name, COUNT(o) AS completedOrders, " +
+            "SUM(o.totalAmount) AS revenue, AVG(o.handlingSeconds) AS avgHandlingSeconds " +
+            "FROM Order o JOIN o.salesperson s WHERE o.status = :status " +
+            "GROUP BY s.id, s.fullName ORDER BY COUNT(o) DESC")
+    List<SalespersonStats> getSalespersonPerformance(@Param("status") Order.OrderStatus status);
+
+    // Compare-and-set claim: assigns the salesperson only while the order is still in the expected status
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :to, o.salesperson = :salesperson, o.claimedAt = :now, o.updatedAt = :now " +
+            "WHERE o.id = :orderId AND o.status = :from")
+    int claimIfStatus(@Param("orderId") Long orderId,
+                      @Param("salesperson") User salesperson,
+                      @Param("from") Order.OrderStatus from,
+                      @Param("to") Order.OrderStatus to,
+                      @Param("now") LocalDateTime now);
+
+    // Oldest orders in the given status, row-locked; rows already locked by another claimer are skipped
+    // (lock timeout -2 is Hibernate's SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o FROM Order o WHERE o.status = :status ORDER BY o.createdAt, o.id")
+    List<Order> findNextForClaim(@Param("status") Order.OrderStatus status, Pageable pageable);
+
+    // Full recompute of the hourly sales rollup: [date, hour, orderCount, revenue]
+    @Query("SELECT CAST(o.createdAt AS LocalDate), EXTRACT(HOUR FROM o.createdAt), COUNT(o), SUM(o.totalAmount) " +
+            "FROM Order o WHERE o.status <> :excluded " +
+            "GROUP BY CAST(o.createdAt AS LocalDate), EXTRACT(HOUR FROM o.createdAt)")
+    List<Object[]> aggregateSalesByHour(@Param("excluded") Order.OrderStatus excluded);
+
+    // [revenue, completed revenue handled by a salesperson] of non-cancelled orders created in [from, to)
+    @Query("SELECT COALESCE(SUM(o.totalAmount), 0), " +
+            "COALESCE(SUM(CASE WHEN o.status = :completed AND o.salesperson IS NOT NULL THEN o.totalAmount ELSE 0 END), 0) " +
+            "FROM Order o WHERE o.status <> :cancelled AND o.createdAt >= :from AND o.createdAt < :to")
+    List<Object[]> sumRevenueBetween(@Param("cancelled") Order.OrderStatus cancelled,
+                                     @Param("completed") Order.OrderStatus completed,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to);
+
+    // [productId, total kg sold] over non-cancelled orders created in [from, to)
+    @Query("SELECT oi.product.id, SUM(oi.quantityKg) FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.status <> :cancelled AND o.createdAt >= :from AND o.createdAt < :to GROUP BY oi.product.id")
+    List<Object[]> sumQuantityByProductBetween(@Param("cancelled") Order.OrderStatus cancelled,
+                                               @Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to);
+
+    // Order lines with their order's facts for the analytics engine, keyset-paged by (order id, item id):
+    // [orderId, itemId, createdAt, status, salespersonId, customerId, productId, quantityKg, pricePerKg, subtotal, orderTotal]
+    @Query("SELECT o.id, oi.id, o.createdAt, o.status, s.id, o.customer.id, oi.product.id, " +
+            "oi.quantityKg, oi.pricePerKgAtTimeOfOrder, oi.subtotal, o.totalAmount " +
+            "FROM OrderItem oi JOIN oi.order o LEFT JOIN o.salesperson s " +
+            "WHERE o.id >= :afterOrderId AND (o.id > :afterOrderId OR oi.id > :afterItemId) " +
+            "ORDER BY o.id, oi.id")
+    List<Object[]> findOrderFactsAfter(@Param("afterOrderId") Long afterOrderId,
+                                       @Param("afterItemId") Long afterItemId,
+                                       Pageable pageable);
 }
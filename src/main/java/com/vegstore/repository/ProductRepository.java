@@ -1,8 +1,13 @@
 package com.vegstore.repository;
 
 import com.vegstore.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +18,45 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategory(String category);
     // In ProductRepository.java
     Optional<Product> findByName(String name);
+
+    // Products with their supplier, for the in-memory catalog
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.supplier")
+    List<Product> findAllWithSupplier();
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.supplier WHERE p.id IN :ids")
+    List<Product> findAllWithSupplierByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Native so the parameter arithmetic is left to the database (portable across MySQL and H2).
+    // Conditional decrement: only touches the row when enough stock remains, returns 0 otherwise
+    @Modifying
+    @Query(value = "UPDATE products SET stock_kg = stock_kg - :quantity, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = :productId AND stock_kg >= :quantity", nativeQuery = true)
+    int decrementStockIfAvailable(@Param("productId") Long productId, @Param("quantity") Double quantity);
+
+    @Modifying
+    @Query(value = "UPDATE products SET stock_kg = stock_kg + :quantity, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = :productId", nativeQuery = true)
+    int incrementStock(@Param("productId") Long productId, @Param("quantity") Double quantity);
+
+    // Keyset pages for the admin product list, by (name, id) or newest first; null filters match everything
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.supplier s " +
+            "WHERE (:category IS NULL OR p.category = :category) AND (:supplierId IS NULL OR s.id = :supplierId) " +
+            "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+            "ORDER BY p.name, p.id")
+    List<Product> findPageByName(@Param("category") String category,
+                                 @Param("supplierId") Long supplierId,
+                                 @Param("afterName") String afterName,
+                                 @Param("afterId") Long afterId,
+                                 Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.supplier s " +
+            "WHERE (:category IS NULL OR p.category = :category) AND (:supplierId IS NULL OR s.id = :supplierId) " +
+            "AND (:beforeId IS NULL OR p.id < :beforeId) ORDER BY p.id DESC")
+    List<Product> findPageNewest(@Param("category") String category,
+                                 @Param("supplierId") Long supplierId,
+                                 @Param("beforeId") Long beforeId,
+                                 Pageable pageable);
+
+    @Query("SELECT DISTINCT p.category FROM Product p WHERE p.category IS NOT NULL ORDER BY p.category")
+    List<String> findCategories();
 }
@@ -1,15 +1,34 @@
 package com.vegstore.repository;
 
 import com.vegstore.entity.Purchase;
-import com.vegstore.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
-    @Query("SELECT p FROM Purchase p WHERE p.product = :product ORDER BY p.purchaseDate DESC")
-    Optional<Purchase> findLatestPurchaseForProduct(@Param("product") Product product);
+    // [productId, purchaseId, costPerKg] of each product's most recent purchase(s), in one query
+    @Query("SELECT p.product.id, p.id, p.costPerKg FROM Purchase p WHERE p.purchaseDate = " +
+            "(SELECT MAX(p2.purchaseDate) FROM Purchase p2 WHERE p2.product = p.product)")
+    List<Object[]> findLatestCostPerProduct();
+
+    // Keyset pages, newest first by (purchaseDate, id), with supplier and product fetched for display;
+    // purchases from <= purchaseDate < to, null filters match everything
+    @Query("SELECT p FROM Purchase p JOIN FETCH p.supplier s JOIN FETCH p.product pr " +
+            "WHERE (:supplierId IS NULL OR s.id = :supplierId) AND (:productId IS NULL OR pr.id = :productId) " +
+            "AND (:from IS NULL OR p.purchaseDate >= :from) AND (:to IS NULL OR p.purchaseDate < :to) " +
+            "AND (:beforeDate IS NULL OR p.purchaseDate < :beforeDate " +
+            "OR (p.purchaseDate = :beforeDate AND p.id < :beforeId)) " +
+            "ORDER BY p.purchaseDate DESC, p.id DESC")
+    List<Purchase> findPage(@Param("supplierId") Long supplierId,
+                            @Param("productId") Long productId,
+                            @Param("from") LocalDateTime from,
+                            @Param("to") LocalDateTime to,
+                            @Param("beforeDate") LocalDateTime beforeDate,
+                            @Param("beforeId") Long beforeId,
+                            Pageable pageable);
 }
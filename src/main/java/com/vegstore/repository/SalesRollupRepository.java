@@ -0,0 +1,36 @@
+package com.vegstore.repository;
+
+import com.vegstore.entity.SalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    // Adds one flush's delta to an hour's bucket; 0 means the hour has no row yet and the caller inserts it
+    @Modifying
+    @Query(value = "UPDATE sales_rollup SET order_count = order_count + :orders, revenue = revenue + :revenue, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE bucket_date = :bucketDate AND bucket_hour = :bucketHour", nativeQuery = true)
+    int addToBucket(@Param("bucketDate") LocalDate bucketDate,
+                    @Param("bucketHour") int bucketHour,
+                    @Param("orders") long orders,
+                    @Param("revenue") BigDecimal revenue);
+
+    // [date, orderCount, revenue] per day
+    @Query("SELECT r.bucketDate, SUM(r.orderCount), SUM(r.revenue) FROM SalesRollup r " +
+            "WHERE r.bucketDate >= :from GROUP BY r.bucketDate ORDER BY r.bucketDate")
+    List<Object[]> sumByDateFrom(@Param("from") LocalDate from);
+
+    List<SalesRollup> findByBucketDateGreaterThanEqualOrderByBucketDateAscBucketHourAsc(LocalDate from);
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r")
+    int deleteAllBuckets();
+}
@@ -0,0 +1,19 @@
+package com.vegstore.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of {@link OrderRepository#getSalespersonPerformance}: one row per salesperson.
+ */
+public interface SalespersonStats {
+
+    Long getSalespersonId();
+
+    String getName();
+
+    Long getCompletedOrders();
+
+    BigDecimal getRevenue();
+
+    Double getAvgHandlingSeconds();
+}
@@ -0,0 +1,9 @@
+package com.vegstore.repository;
+
+import com.vegstore.entity.SearchSynonym;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SearchSynonymRepository extends JpaRepository<SearchSynonym, Long> {
+}
@@ -1,9 +1,19 @@
 package com.vegstore.repository;
 
 import com.vegstore.entity.Supplier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface SupplierRepository extends JpaRepository<Supplier, Long> {
+
+    // Keyset pages by (name, id)
+    @Query("SELECT s FROM Supplier s WHERE :afterName IS NULL OR s.name > :afterName " +
+            "OR (s.name = :afterName AND s.id > :afterId) ORDER BY s.name, s.id")
+    List<Supplier> findPage(@Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
 }
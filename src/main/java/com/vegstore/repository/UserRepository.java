@@ -1,7 +1,10 @@
 package com.vegstore.repository;
 
 import com.vegstore.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 import java.util.List;
@@ -12,4 +15,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     List<User> findByRole(User.Role role);
     long countByRole(User.Role role);
+    long countByActiveTrue();
+    long countByActiveFalse();
+
+    // Keyset pages by username (unique); null filters match everything
+    @Query("SELECT u FROM User u WHERE (:role IS NULL OR u.role = :role) AND (:active IS NULL OR u.active = :active) " +
+            "AND (:afterUsername IS NULL OR u.username > :afterUsername) ORDER BY u.username")
+    List<User> findPage(@Param("role") User.Role role,
+                        @Param("active") Boolean active,
+                        @Param("afterUsername") String afterUsername,
+                        Pageable pageable);
 }
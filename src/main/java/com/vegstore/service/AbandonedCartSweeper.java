@@ -0,0 +1,212 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Cart;
+import com.vegstore.repository.CartItemRepository;
+import com.vegstore.repository.CartRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes carts nobody has touched for {@code vegstore.cart.sweep.abandoned-days}. Idle carts are
+ * walked in {@code updated_at} order in chunks; each chunk is its own short transaction that skips
+ * rows locked by a concurrent write-back, and chunks are spaced out by {@code pause-millis} so a
+ * sweep never competes with live traffic. Carts held in {@link CartCache} are left alone: they are
+ * skipped here, and loading a cart into the cache stamps its row, so a cart loaded after that check
+ * is no longer idle when its chunk re-checks under the row lock.
+ */
+@Service
+@Slf4j
+public class AbandonedCartSweeper {
+
+    // Keyset start; older than any cart
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartCache cartCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration abandonedAfter;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final int maxChunks;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    // Totals since startup, plus timings of the most recent run
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong cartsScanned = new AtomicLong();
+    private final AtomicLong cartsPurged = new AtomicLong();
+    private final AtomicLong itemsPurged = new AtomicLong();
+    private final AtomicLong chunkMillisTotal = new AtomicLong();
+    private final AtomicLong chunkMillisMax = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile long lastRunPurged;
+
+    public AbandonedCartSweeper(CartRepository cartRepository,
+                                CartItemRepository cartItemRepository,
+                                CartCache cartCache,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${vegstore.cart.sweep.enabled:true}") boolean enabled,
+                                @Value("${vegstore.cart.sweep.abandoned-days:30}") long abandonedDays,
+                                @Value("${vegstore.cart.sweep.chunk-size:200}") int chunkSize,
+                                @Value("${vegstore.cart.sweep.pause-millis:100}") long pauseMillis,
+                                @Value("${vegstore.cart.sweep.max-chunks:500}") int maxChunks) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartCache = cartCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.abandonedAfter = Duration.ofDays(abandonedDays);
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.maxChunks = maxChunks;
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.cart.sweep.interval-minutes:60}",
+            initialDelayString = "${vegstore.cart.sweep.interval-minutes:60}", timeUnit = TimeUnit.MINUTES)
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /** Runs one sweep now and returns the number of carts deleted; -1 if a sweep is already running. */
+    public int sweep() {
+        if (!sweepLock.tryLock()) {
+            return -1;
+        }
+        try {
+            return sweepOnce(LocalDateTime.now().minus(abandonedAfter));
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long chunkCount = chunks.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("abandonedAfterDays", abandonedAfter.toDays());
+        stats.put("chunkSize", chunkSize);
+        stats.put("pauseMillis", pauseMillis);
+        stats.put("runs", runs.get());
+        stats.put("chunks", chunkCount);
+        stats.put("cartsScanned", cartsScanned.get());
+        stats.put("cartsPurged", cartsPurged.get());
+        stats.put("itemsPurged", itemsPurged.get());
+        stats.put("avgChunkMillis", chunkCount == 0 ? 0 : chunkMillisTotal.get() / chunkCount);
+        stats.put("maxChunkMillis", chunkMillisMax.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunPurged", lastRunPurged);
+        return stats;
+    }
+
+    private int sweepOnce(LocalDateTime cutoff) {
+        long started = System.nanoTime();
+        LocalDateTime afterUpdatedAt = EPOCH;
+        Long afterId = 0L;
+        int purged = 0;
+        int chunk = 0;
+
+        while (chunk < maxChunks) {
+            List<Object[]> page = cartRepository.findIdleAfter(cutoff, afterUpdatedAt, afterId, PageRequest.of(0, chunkSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            Object[] last = page.get(page.size() - 1);
+            afterUpdatedAt = (LocalDateTime) last[2];
+            afterId = (Long) last[0];
+
+            // A cart in memory is in use, whatever its row says
+            Map<Long, Long> userByCart = new HashMap<>();
+            for (Object[] row : page) {
+                Long userId = (Long) row[1];
+                if (!cartCache.isCached(userId)) {
+                    userByCart.put((Long) row[0], userId);
+                }
+            }
+
+            long chunkStarted = System.nanoTime();
+            if (!userByCart.isEmpty()) {
+                purged += purgeChunk(userByCart, cutoff);
+            }
+            long chunkMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStarted);
+            chunks.incrementAndGet();
+            cartsScanned.addAndGet(page.size());
+            chunkMillisTotal.addAndGet(chunkMillis);
+            chunkMillisMax.accumulateAndGet(chunkMillis, Math::max);
+            chunk++;
+
+            if (page.size() < chunkSize) {
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+
+        runs.incrementAndGet();
+        lastRunAt = LocalDateTime.now();
+        lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        lastRunPurged = purged;
+        if (purged > 0 || chunk >= maxChunks) {
+            log.info("Abandoned cart sweep deleted {} carts in {} chunks ({} ms){}", purged, chunk, lastRunMillis,
+                    chunk >= maxChunks ? ", stopped at the chunk limit" : "");
+        }
+        return purged;
+    }
+
+    private int purgeChunk(Map<Long, Long> userByCart, LocalDateTime cutoff) {
+        try {
+            List<Long> userIds = new ArrayList<>();
+            int[] deleted = transactionTemplate.execute(status -> {
+                List<Long> cartIds = new ArrayList<>();
+                for (Cart cart : cartRepository.lockIdle(userByCart.keySet(), cutoff)) {
+                    cartIds.add(cart.getId());
+                    userIds.add(userByCart.get(cart.getId()));
+                }
+                if (cartIds.isEmpty()) {
+                    return new int[2];
+                }
+                int items = cartItemRepository.deleteAllByCartIdIn(cartIds);
+                return new int[]{cartRepository.deleteAllByIdIn(cartIds), items};
+            });
+            cartCache.purged(userIds);
+            cartsPurged.addAndGet(deleted[0]);
+            itemsPurged.addAndGet(deleted[1]);
+            return deleted[0];
+        } catch (RuntimeException e) {
+            // Leave the chunk for the next run
+            log.warn("Abandoned cart sweep skipped a chunk of {} carts: {}", userByCart.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,118 +1,61 @@
 package com.vegstore.service;
 
-import com.vegstore.entity.Order;
-import com.vegstore.entity.OrderItem;
-import com.vegstore.entity.User;
-import com.vegstore.repository.OrderRepository;
 import com.vegstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AdminService {
 
-    private final OrderRepository orderRepository;
-    private final OrderService orderService;
     private final UserRepository userRepository;
-
-    // Map salespersonId -> accumulated salary amount
-    private final Map<Long, BigDecimal> salespersonSalaries = new ConcurrentHashMap<>();
-
-    public void addSalespersonSalary(User salesperson, BigDecimal salary) {
-        salespersonSalaries.merge(salesperson.getId(), salary, BigDecimal::add);
-    }
+    private final SalesRollupService salesRollupService;
+    private final ProfitAnalysisService profitAnalysisService;
+    private final SalespersonPerformanceService salespersonPerformanceService;
+    private final CommissionLedgerService commissionLedgerService;
 
     // For showing in charts and analytics: salesperson name -> salary earned
     public Map<String, BigDecimal> getSalespersonSalaries() {
+        Map<Long, BigDecimal> commissions = commissionLedgerService.getCommissions();
         Map<String, BigDecimal> salaries = new HashMap<>();
-        salespersonSalaries.forEach((id, amount) -> {
-            userRepository.findById(id).ifPresent(user -> salaries.put(user.getFullName(), amount));
-        });
+        userRepository.findAllById(commissions.keySet())
+                .forEach(user -> salaries.put(user.getFullName(), commissions.get(user.getId())));
         return salaries;
     }
 
-    public Map<String, BigDecimal> getSalesTrend(int days) {
-        LocalDateTime startDate = LocalDateTime.now().minusDays(days);
-        List<Order> orders = orderRepository.findOrdersAfterDate(startDate);
-
-        Map<String, BigDecimal> salesByDate = new TreeMap<>();
-
-        // Initialize all dates with zero
-        for (int i = days - 1; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            salesByDate.put(date.toString(), BigDecimal.ZERO);
-        }
+    public Map<String, Object> verifyCommissionLedger() {
+        return commissionLedgerService.verify();
+    }
 
-        // Aggregate sales by date
-        for (Order order : orders) {
-            if (order.getStatus() != Order.OrderStatus.CANCELLED) {
-                String date = order.getCreatedAt().toLocalDate().toString();
-                BigDecimal currentAmount = salesByDate.getOrDefault(date, BigDecimal.ZERO);
-                salesByDate.put(date, currentAmount.add(order.getTotalAmount()));
-            }
-        }
+    public int rebuildCommissionLedger() {
+        return commissionLedgerService.rebuild();
+    }
 
-        return salesByDate;
+    // Served from the hourly rollup: O(days) rows however many orders there are
+    public Map<String, BigDecimal> getSalesTrend(int days) {
+        return salesRollupService.getDailySalesTrend(days);
     }
 
+    // One GROUP BY in the database, cached briefly, instead of walking every order
     public Map<String, Long> getSalespersonPerformance() {
-        List<Order> allOrders = orderRepository.findAll();
-        Map<String, Long> performanceMap = new LinkedHashMap<>();
-
-        for (Order order : allOrders) {
-            // Only consider completed orders
-            if (order.getStatus() == Order.OrderStatus.COMPLETED && order.getSalesperson() != null) {
-                String name = order.getSalesperson().getFullName();
-                performanceMap.put(name, performanceMap.getOrDefault(name, 0L) + 1);
-            }
-        }
-        return performanceMap;
+        return salespersonPerformanceService.getCompletedOrderCounts();
     }
 
+    public List<SalespersonPerformanceService.Performance> getSalespersonPerformanceDetails() {
+        return salespersonPerformanceService.getPerformance();
+    }
 
+    // Aggregate queries and a per-product cost table instead of a purchase lookup per order item
     public Map<String, BigDecimal> getProfitAnalysis() {
-        List<Order> allOrders = orderRepository.findAll();
-
-        BigDecimal totalRevenue = BigDecimal.ZERO;
-        BigDecimal totalCogs = BigDecimal.ZERO;
-        BigDecimal totalSalaryExpense = BigDecimal.ZERO;
-
-        for (Order order : allOrders) {
-            if (order.getStatus() != Order.OrderStatus.CANCELLED) {
-                totalRevenue = totalRevenue.add(order.getTotalAmount());
-
-                for (OrderItem item : order.getOrderItems()) {
-                    BigDecimal itemProfit = orderService.calculateOrderItemProfit(item);
-                    BigDecimal itemRevenue = item.getSubtotal();
-                    BigDecimal itemCogs = itemRevenue.subtract(itemProfit);
-                    totalCogs = totalCogs.add(itemCogs);
-                }
-
-                if (order.getStatus() == Order.OrderStatus.COMPLETED && order.getSalesperson() != null) {
-                    totalSalaryExpense = totalSalaryExpense.add(order.getTotalAmount().multiply(BigDecimal.valueOf(0.1)));
-                }
-            }
-        }
-
-        BigDecimal grossProfit = totalRevenue.subtract(totalCogs);
-        BigDecimal netProfit = grossProfit.subtract(totalSalaryExpense);
-
-        Map<String, BigDecimal> analysis = new LinkedHashMap<>();
-        analysis.put("revenue", totalRevenue);
-        analysis.put("cogs", totalCogs);
-        analysis.put("salary", totalSalaryExpense);  // <---- Salary for chart
-        analysis.put("profit", netProfit);
-
-        return analysis;
+        return profitAnalysisService.getProfitAnalysis(null, null);
     }
 
-
+    public Map<String, BigDecimal> getProfitAnalysis(LocalDate from, LocalDate to) {
+        return profitAnalysisService.getProfitAnalysis(from, to);
+    }
 }
@@ -0,0 +1,659 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Cart;
+import com.vegstore.entity.CartItem;
+import com.vegstore.entity.Product;
+import com.vegstore.repository.CartRepository;
+import com.vegstore.repository.CartTotals;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind store for customer carts. Each active cart lives in memory as a map of product ID to
+ * line, so cart clicks are applied without touching the database. Changed carts are written back in
+ * one transaction per flush: on a timer, before checkout and on shutdown. A cart is therefore
+ * durable within {@code vegstore.cart.flush-millis}; idle carts are dropped from memory once flushed.
+ * A {@link CartSummary} (count and total) is kept for the most recently seen customers, in a bounded
+ * LRU, so rendering the cart badge never needs the cart itself.
+ */
+@Service
+@Slf4j
+public class CartCache {
+
+    /** What a cart line needs to know about its product, captured when the line is loaded or added. */
+    public record ProductInfo(Long id, String name, String imageUrl, Double stockKg, double retailPricePerKg,
+                              double wholesalePricePerKg, double minWholesaleQuantityKg) {
+
+        static ProductInfo of(Product product) {
+            return new ProductInfo(product.getId(), product.getName(), product.getImageUrl(), product.getStockKg(),
+                    product.getRetailPricePerKg().doubleValue(), product.getWholesalePricePerKg().doubleValue(),
+                    product.getMinWholesaleQuantityKg());
+        }
+
+        double priceFor(boolean wholesale, double quantity) {
+            return wholesale && quantity >= minWholesaleQuantityKg ? wholesalePricePerKg : retailPricePerKg;
+        }
+    }
+
+    public record Line(ProductInfo product, double quantity, double price) {
+    }
+
+    /** One step of a batched cart change; ADD is relative, UPDATE sets the quantity (0 removes). */
+    public record Operation(Type type, Long productId, Double quantity) {
+
+        public enum Type { ADD, UPDATE, REMOVE }
+    }
+
+    /** Item count and total of a cart; what the navigation badge needs. */
+    public record CartSummary(int itemCount, double total) {
+
+        public static final CartSummary EMPTY = new CartSummary(0, 0);
+
+        static CartSummary of(Collection<Line> lines) {
+            double total = 0;
+            for (Line line : lines) {
+                total += line.quantity() * line.price();
+            }
+            return new CartSummary(lines.size(), total);
+        }
+    }
+
+    /** An immutable copy of a cart, in the order the lines were added. */
+    public record CartView(Long userId, List<Line> lines) {
+    }
+
+    /** A cart as the customer last left it. Guarded by its own lock. */
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        final Long userId;
+        final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        long version;
+        long flushedVersion;
+        // Queued checkouts whose emptied cart is written with their order, so flushes leave it alone
+        int held;
+        boolean evicted;
+        volatile CartSummary summary = CartSummary.EMPTY;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(Long userId) {
+            this.userId = userId;
+        }
+
+        boolean dirty() {
+            return version != flushedVersion;
+        }
+
+        CartView view() {
+            return new CartView(userId, List.copyOf(lines.values()));
+        }
+    }
+
+    private record Snapshot(Entry entry, long version, List<Line> lines) {
+    }
+
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long idleNanos;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Summaries of carts not held in entries; an entry, when present, is authoritative. Guarded by summaryLock
+    private final Map<Long, CartSummary> summaries;
+    private final ReentrantLock summaryLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public CartCache(CartRepository cartRepository,
+                     ProductRepository productRepository,
+                     UserRepository userRepository,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${vegstore.cart.idle-minutes:30}") long idleMinutes,
+                     @Value("${vegstore.cart.summary-cache.max-entries:10000}") int maxSummaries) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleNanos = Duration.ofMinutes(idleMinutes).toNanos();
+        this.summaries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CartSummary> eldest) {
+                return size() > maxSummaries;
+            }
+        };
+    }
+
+    public CartView get(Long userId) {
+        return update(userId, lines -> { }, false);
+    }
+
+    /** The cart's count and total; costs at most one aggregate query per customer, never a cart load. */
+    public CartSummary summary(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            return entry.summary;
+        }
+        CartSummary summary = summaryOf(userId);
+        if (summary == null) {
+            CartTotals totals = cartRepository.getTotals(userId);
+            summary = new CartSummary(totals.getItemCount().intValue(), totals.getTotal());
+            summaryLock.lock();
+            try {
+                CartSummary raced = summaries.putIfAbsent(userId, summary);
+                if (raced != null) {
+                    summary = raced;
+                }
+            } finally {
+                summaryLock.unlock();
+            }
+        }
+        return summary;
+    }
+
+    public CartView add(Long userId, boolean wholesale, Long productId, double quantity) {
+        // Looked up outside the cart lock; only the first add of a product pays for it
+        ProductInfo known = find(userId, productId);
+        ProductInfo product = known != null ? known : ProductInfo.of(productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found")));
+        return update(userId, lines -> {
+            Line line = lines.get(productId);
+            double newQuantity = line != null ? line.quantity() + quantity : quantity;
+            lines.put(productId, new Line(product, newQuantity, product.priceFor(wholesale, newQuantity)));
+        }, true);
+    }
+
+    public CartView setQuantity(Long userId, boolean wholesale, Long productId, double quantity) {
+        return update(userId, lines -> {
+            Line line = lines.get(productId);
+            if (line == null) {
+                return;
+            }
+            if (quantity <= 0) {
+                lines.remove(productId);
+            } else {
+                lines.put(productId, new Line(line.product(), quantity, line.product().priceFor(wholesale, quantity)));
+            }
+        }, true);
+    }
+
+    /**
+     * Applies all operations in order as one change: products are resolved first, so either every
+     * operation lands or, if one is invalid, none does.
+     */
+    public CartView apply(Long userId, boolean wholesale, List<Operation> operations) {
+        // Product details for every ADD, captured up front so a line removed in between can be re-added
+        Map<Long, ProductInfo> products = new HashMap<>();
+        Set<Long> unknown = new HashSet<>();
+        for (Operation operation : operations) {
+            if (operation.type() == null || operation.productId() == null) {
+                throw new RuntimeException("Each operation needs a type and a product");
+            }
+            if (operation.type() != Operation.Type.REMOVE && operation.quantity() == null) {
+                throw new RuntimeException("Quantity is required for " + operation.type());
+            }
+            if (operation.type() == Operation.Type.ADD) {
+                if (operation.quantity() <= 0) {
+                    throw new RuntimeException("Quantity to add must be positive");
+                }
+                ProductInfo known = find(userId, operation.productId());
+                if (known != null) {
+                    products.put(operation.productId(), known);
+                } else {
+                    unknown.add(operation.productId());
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (Product product : productRepository.findAllById(unknown)) {
+                products.put(product.getId(), ProductInfo.of(product));
+            }
+            unknown.removeAll(products.keySet());
+            if (!unknown.isEmpty()) {
+                throw new RuntimeException("Product not found: " + unknown);
+            }
+        }
+
+        return update(userId, lines -> {
+            for (Operation operation : operations) {
+                Long productId = operation.productId();
+                Line line = lines.get(productId);
+                switch (operation.type()) {
+                    case ADD -> {
+                        ProductInfo product = line != null ? line.product() : products.get(productId);
+                        double quantity = line != null ? line.quantity() + operation.quantity() : operation.quantity();
+                        lines.put(productId, new Line(product, quantity, product.priceFor(wholesale, quantity)));
+                    }
+                    case UPDATE -> {
+                        if (line != null && operation.quantity() <= 0) {
+                            lines.remove(productId);
+                        } else if (line != null) {
+                            lines.put(productId, new Line(line.product(), operation.quantity(),
+                                    line.product().priceFor(wholesale, operation.quantity())));
+                        }
+                    }
+                    case REMOVE -> lines.remove(productId);
+                }
+            }
+        }, true);
+    }
+
+    public CartView remove(Long userId, Long productId) {
+        return update(userId, lines -> lines.remove(productId), true);
+    }
+
+    public CartView clear(Long userId) {
+        return update(userId, Map::clear, true);
+    }
+
+    /**
+     * Empties the cart and returns what it held, as one step under the cart's lock: checkout builds
+     * the order from exactly these lines, and edits made afterwards start a new cart.
+     */
+    public CartView take(Long userId) {
+        List<Line> taken = new ArrayList<>();
+        update(userId, lines -> {
+            taken.addAll(lines.values());
+            lines.clear();
+        }, true);
+        return new CartView(userId, List.copyOf(taken));
+    }
+
+    /**
+     * Like {@link #take}, but the emptied cart is held back from flushes until {@link #writeHeld}
+     * saves it in the transaction that places the order (or {@link #release} gives up), so the
+     * database keeps the old lines until the order exists.
+     */
+    public CartView takeHeld(Long userId) {
+        List<Line> taken = new ArrayList<>();
+        updateEntry(userId, entry -> {
+            taken.addAll(entry.lines.values());
+            entry.lines.clear();
+            entry.held++;
+        }, true);
+        return new CartView(userId, List.copyOf(taken));
+    }
+
+    /** Writes a held cart within the caller's transaction; the hold is released when that commits. */
+    public void writeHeld(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+        Snapshot snapshot;
+        entry.lock.lock();
+        try {
+            snapshot = new Snapshot(entry, entry.version, List.copyOf(entry.lines.values()));
+        } finally {
+            entry.lock.unlock();
+        }
+        write(List.of(snapshot));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                markFlushed(snapshot);
+                release(userId);
+            }
+        });
+    }
+
+    /** Drops one hold taken by {@link #takeHeld}; the cart is flushed normally again. */
+    public void release(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+        entry.lock.lock();
+        try {
+            entry.held = Math.max(0, entry.held - 1);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /** Makes the cart exactly these lines, whatever it holds now. */
+    public CartView replace(Long userId, boolean wholesale, List<Line> replacement) {
+        return update(userId, lines -> {
+            lines.clear();
+            for (Line line : replacement) {
+                ProductInfo product = line.product();
+                lines.put(product.id(), new Line(product, line.quantity(), product.priceFor(wholesale, line.quantity())));
+            }
+        }, true);
+    }
+
+    /** Puts lines from {@link #take} back, e.g. when their order failed; adds to anything added since. */
+    public CartView restore(Long userId, boolean wholesale, List<Line> restored) {
+        return update(userId, lines -> {
+            for (Line line : restored) {
+                ProductInfo product = line.product();
+                Line current = lines.get(product.id());
+                double quantity = current != null ? current.quantity() + line.quantity() : line.quantity();
+                lines.put(product.id(), new Line(product, quantity, product.priceFor(wholesale, quantity)));
+            }
+        }, true);
+    }
+
+    /**
+     * Writes the customer's pending changes now, e.g. before checkout reads the persisted cart.
+     * Returns false if they could not be saved; the cart has then been reloaded from the database.
+     */
+    public boolean flush(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            // Only clean carts are dropped from memory
+            return true;
+        }
+        long version;
+        entry.lock.lock();
+        try {
+            version = entry.version;
+        } finally {
+            entry.lock.unlock();
+        }
+        flushEntries(List.of(entry));
+        entry.lock.lock();
+        try {
+            return !entry.evicted && entry.flushedVersion >= version;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.cart.flush-millis:2000}")
+    public void flushAll() {
+        flushEntries(new ArrayList<>(entries.values()));
+        evictIdle();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flushEntries(new ArrayList<>(entries.values()));
+        log.info("Cart cache flushed on shutdown");
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Whether the customer's cart is held in memory, i.e. in use and possibly ahead of the database. */
+    public boolean isCached(Long userId) {
+        return entries.containsKey(userId);
+    }
+
+    /** Forgets cached summaries of carts deleted behind the cache's back. */
+    public void purged(Collection<Long> userIds) {
+        userIds.forEach(this::forgetSummary);
+    }
+
+    private CartView update(Long userId, Consumer<Map<Long, Line>> change, boolean modifies) {
+        return updateEntry(userId, entry -> change.accept(entry.lines), modifies);
+    }
+
+    private CartView updateEntry(Long userId, Consumer<Entry> change, boolean modifies) {
+        while (true) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                entry = load(userId);
+                Entry raced = entries.putIfAbsent(userId, entry);
+                if (raced != null) {
+                    entry = raced;
+                } else {
+                    forgetSummary(userId);
+                }
+            }
+            entry.lock.lock();
+            try {
+                // Evicted between lookup and lock; start again with a fresh entry
+                if (entry.evicted) {
+                    continue;
+                }
+                change.accept(entry);
+                if (modifies) {
+                    entry.version++;
+                    entry.summary = CartSummary.of(entry.lines.values());
+                }
+                entry.lastAccess = System.nanoTime();
+                return entry.view();
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private ProductInfo find(Long userId, Long productId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            Line line = entry.lines.get(productId);
+            return line != null ? line.product() : null;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    private Entry load(Long userId) {
+        while (true) {
+            Optional<Cart> loaded = cartRepository.findWithItemsByUserId(userId);
+            // A long-untouched cart may be in an abandoned-cart sweep's chunk right now. Stamping it waits for
+            // that chunk and keeps later ones away; no row stamped means the sweep deleted it, so read again
+            if (loaded.isPresent() && isStale(loaded.get()) && transactionTemplate.execute(status ->
+                    cartRepository.touch(loaded.get().getId(), LocalDateTime.now())) == 0) {
+                continue;
+            }
+            Entry entry = new Entry(userId);
+            loaded.ifPresent(cart -> {
+                for (CartItem item : cart.getItems()) {
+                    ProductInfo product = ProductInfo.of(item.getProduct());
+                    entry.lines.put(product.id(), new Line(product, item.getQuantity(),
+                            item.getPriceAtTime() != null ? item.getPriceAtTime() : product.retailPricePerKg()));
+                }
+            });
+            entry.summary = CartSummary.of(entry.lines.values());
+            return entry;
+        }
+    }
+
+    // Not written for longer than carts stay in memory; recently written carts are skipped to spare the update
+    private boolean isStale(Cart cart) {
+        return cart.getUpdatedAt() == null || cart.getUpdatedAt().isBefore(LocalDateTime.now().minusNanos(idleNanos));
+    }
+
+    private CartSummary summaryOf(Long userId) {
+        summaryLock.lock();
+        try {
+            return summaries.get(userId);
+        } finally {
+            summaryLock.unlock();
+        }
+    }
+
+    private void keepSummary(Long userId, CartSummary summary) {
+        summaryLock.lock();
+        try {
+            summaries.put(userId, summary);
+        } finally {
+            summaryLock.unlock();
+        }
+    }
+
+    private void forgetSummary(Long userId) {
+        summaryLock.lock();
+        try {
+            summaries.remove(userId);
+        } finally {
+            summaryLock.unlock();
+        }
+    }
+
+    private void evict(Long userId) {
+        forgetSummary(userId);
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+        entry.lock.lock();
+        try {
+            entry.evicted = true;
+            entries.remove(userId, entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Entry entry : entries.values()) {
+            if (now - entry.lastAccess < idleNanos) {
+                continue;
+            }
+            entry.lock.lock();
+            try {
+                if (!entry.dirty() && now - entry.lastAccess >= idleNanos) {
+                    entry.evicted = true;
+                    entries.remove(entry.userId, entry);
+                    keepSummary(entry.userId, entry.summary);
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private void flushEntries(List<Entry> candidates) {
+        flushLock.lock();
+        try {
+            List<Snapshot> snapshots = new ArrayList<>();
+            for (Entry entry : candidates) {
+                entry.lock.lock();
+                try {
+                    if (entry.dirty() && !entry.evicted && entry.held == 0) {
+                        snapshots.add(new Snapshot(entry, entry.version, List.copyOf(entry.lines.values())));
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+            if (snapshots.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(snapshots));
+                snapshots.forEach(this::markFlushed);
+                log.debug("Flushed {} carts", snapshots.size());
+            } catch (RuntimeException e) {
+                log.warn("Cart flush of {} carts failed ({}), writing them one by one", snapshots.size(), e.getMessage());
+                for (Snapshot snapshot : snapshots) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> write(List.of(snapshot)));
+                        markFlushed(snapshot);
+                    } catch (RuntimeException single) {
+                        retryWithoutMissingProducts(snapshot, single);
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // A product deleted while it sat in an unsaved cart fails the write; drop those lines and try again,
+    // and if that still fails fall back to whatever the database has
+    private void retryWithoutMissingProducts(Snapshot snapshot, RuntimeException failure) {
+        Entry entry = snapshot.entry();
+        Set<Long> missing = new HashSet<>();
+        for (Line line : snapshot.lines()) {
+            if (!productRepository.existsById(line.product().id())) {
+                missing.add(line.product().id());
+            }
+        }
+        if (!missing.isEmpty()) {
+            Snapshot retry;
+            entry.lock.lock();
+            try {
+                entry.lines.keySet().removeAll(missing);
+                entry.version++;
+                retry = new Snapshot(entry, entry.version, List.copyOf(entry.lines.values()));
+            } finally {
+                entry.lock.unlock();
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(List.of(retry)));
+                markFlushed(retry);
+                log.warn("Dropped deleted products {} from the cart of user {}", missing, entry.userId);
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        log.error("Cart for user {} could not be saved, reloading it: {}", entry.userId, failure.getMessage());
+        evict(entry.userId);
+    }
+
+    private void markFlushed(Snapshot snapshot) {
+        Entry entry = snapshot.entry();
+        entry.lock.lock();
+        try {
+            entry.flushedVersion = Math.max(entry.flushedVersion, snapshot.version());
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    // Brings each persisted cart in line with its snapshot; Hibernate batches the resulting writes
+    private void write(List<Snapshot> snapshots) {
+        Map<Long, Cart> carts = new HashMap<>();
+        List<Long> userIds = snapshots.stream().map(snapshot -> snapshot.entry().userId).toList();
+        for (Cart cart : cartRepository.findAllWithItemsByUserIdIn(userIds)) {
+            carts.put(cart.getUser().getId(), cart);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Snapshot snapshot : snapshots) {
+            Long userId = snapshot.entry().userId;
+            Cart cart = carts.get(userId);
+            if (cart == null) {
+                cart = Cart.builder().user(userRepository.getReferenceById(userId)).build();
+            }
+
+            Set<Long> wanted = new HashSet<>();
+            for (Line line : snapshot.lines()) {
+                wanted.add(line.product().id());
+            }
+            cart.retainItems(wanted);
+            for (Line line : snapshot.lines()) {
+                CartItem item = cart.findItem(line.product().id());
+                if (item == null) {
+                    cart.addItem(CartItem.builder()
+                            .product(productRepository.getReferenceById(line.product().id()))
+                            .quantity(line.quantity())
+                            .priceAtTime(line.price())
+                            .build());
+                } else {
+                    item.setQuantity(line.quantity());
+                    item.setPriceAtTime(line.price());
+                }
+            }
+            // Item changes alone don't dirty the cart row, so stamp it explicitly
+            cart.setUpdatedAt(now);
+            cartRepository.save(cart);
+        }
+    }
+}
@@ -1,121 +1,111 @@
 package com.vegstore.service;
 
-import com.vegstore.entity.Cart;
-import com.vegstore.entity.CartItem;
-import com.vegstore.entity.Product;
 import com.vegstore.entity.User;
-import com.vegstore.repository.CartRepository;
-import com.vegstore.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.util.List;
 
+/**
+ * Customer cart operations. Carts are served from {@link CartCache}, which writes them back to the
+ * database behind the scenes; call {@link #flush(User)} before anything reads the persisted cart.
+ * Checkout takes the lines out of the cache with {@link #takeForCheckout(User)} rather than reading
+ * the database.
+ */
 @Service
 @RequiredArgsConstructor
-@Slf4j
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final ProductRepository productRepository;
-
-    @Transactional
-    public Cart getOrCreateCart(User user) {
-        return cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart cart = Cart.builder()
-                            .user(user)
-                            .build();
-                    return cartRepository.save(cart);
-                });
+    private static final int MAX_BATCH_OPERATIONS = 100;
+
+    private final CartCache cartCache;
+
+    public CartCache.CartView addItemToCart(User user, Long productId, Double quantity) {
+        return cartCache.add(user.getId(), isWholesale(user), productId, quantity);
+    }
+
+    public CartCache.CartView updateItemQuantity(User user, Long productId, Double quantity) {
+        return cartCache.setQuantity(user.getId(), isWholesale(user), productId, quantity);
+    }
+
+    public CartCache.CartView removeItemFromCart(User user, Long productId) {
+        return cartCache.remove(user.getId(), productId);
     }
 
-    @Transactional
-    public Cart addItemToCart(User user, Long productId, Double quantity) {
-        Cart cart = getOrCreateCart(user);
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
-
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-
-            // Update price based on new quantity
-            Double price = user.getIsWholesale() && item.getQuantity() >= product.getMinWholesaleQuantityKg()
-                    ? product.getWholesalePricePerKg().doubleValue()
-                    : product.getRetailPricePerKg().doubleValue();
-            item.setPriceAtTime(price);
-        } else {
-            // Add new item
-            Double price = user.getIsWholesale() && quantity >= product.getMinWholesaleQuantityKg()
-                    ? product.getWholesalePricePerKg().doubleValue()
-                    : product.getRetailPricePerKg().doubleValue();
-
-            CartItem item = CartItem.builder()
-                    .product(product)
-                    .quantity(quantity)
-                    .priceAtTime(price)
-                    .build();
-
-            cart.addItem(item);
+    /** Applies a batch of cart edits at once; either all of them take effect or none does. */
+    public CartCache.CartView applyBatch(User user, List<CartCache.Operation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return cartCache.get(user.getId());
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new RuntimeException("Too many cart operations in one request (max " + MAX_BATCH_OPERATIONS + ")");
         }
+        return cartCache.apply(user.getId(), isWholesale(user), operations);
+    }
 
-        return cartRepository.save(cart);
+    public CartCache.CartView clearCart(User user) {
+        return cartCache.clear(user.getId());
     }
 
-    @Transactional
-    public Cart updateItemQuantity(User user, Long productId, Double quantity) {
-        Cart cart = getOrCreateCart(user);
-
-        cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .ifPresent(item -> {
-                    if (quantity <= 0) {
-                        cart.removeItem(item);
-                    } else {
-                        item.setQuantity(quantity);
-
-                        // Update price based on new quantity
-                        Product product = item.getProduct();
-                        Double price = user.getIsWholesale() && quantity >= product.getMinWholesaleQuantityKg()
-                                ? product.getWholesalePricePerKg().doubleValue()
-                                : product.getRetailPricePerKg().doubleValue();
-                        item.setPriceAtTime(price);
-                    }
-                });
-
-        return cartRepository.save(cart);
+    public CartCache.CartView getCart(User user) {
+        return cartCache.get(user.getId());
     }
 
-    @Transactional
-    public void removeItemFromCart(User user, Long productId) {
-        Cart cart = getOrCreateCart(user);
+    public CartCache.CartSummary getSummary(Long userId) {
+        return cartCache.summary(userId);
+    }
 
-        cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .ifPresent(cart::removeItem);
+    /**
+     * Empties the customer's cart for checkout and returns the lines it held. The emptied cart is
+     * written through at once, so neither a reload nor a second checkout can see the old lines; if
+     * that write fails the lines go back and checkout fails before any order is made.
+     */
+    public CartCache.CartView takeForCheckout(User user) {
+        CartCache.CartView cart = cartCache.take(user.getId());
+        if (!cartCache.flush(user.getId())) {
+            // The failed write reloaded the last saved cart, which may hold more or less than was taken
+            cartCache.replace(user.getId(), isWholesale(user), cart.lines());
+            throw new RuntimeException("Your cart could not be saved, please try again");
+        }
+        return cart;
+    }
 
-        cartRepository.save(cart);
+    /**
+     * Empties the cart for a queued checkout without writing it: the database keeps the lines until
+     * {@link #saveQueued} writes the emptied cart in the order's own transaction.
+     */
+    public CartCache.CartView takeForQueue(User user) {
+        CartCache.CartView cart = cartCache.takeHeld(user.getId());
+        if (cart.lines().isEmpty()) {
+            cartCache.release(user.getId());
+        }
+        return cart;
+    }
+
+    /** Writes the emptied cart of a queued checkout; call inside the transaction that creates its order. */
+    public void saveQueued(User user) {
+        cartCache.writeHeld(user.getId());
+    }
+
+    /** Gives back lines taken by {@link #takeForQueue} for an order that was not placed. */
+    public void restoreQueued(User user, CartCache.CartView cart) {
+        restore(user, cart);
+        cartCache.release(user.getId());
+    }
+
+    /** Gives back lines taken for an order that was not placed. */
+    public void restore(User user, CartCache.CartView cart) {
+        if (!cart.lines().isEmpty()) {
+            cartCache.restore(user.getId(), isWholesale(user), cart.lines());
+        }
     }
 
-    @Transactional
-    public void clearCart(User user) {
-        Cart cart = getOrCreateCart(user);
-        cart.clearItems();
-        cartRepository.save(cart);
+    /** Writes any pending cart changes for this customer to the database. */
+    public void flush(User user) {
+        cartCache.flush(user.getId());
     }
 
-    public Cart getCart(User user) {
-        return getOrCreateCart(user);
+    private static boolean isWholesale(User user) {
+        return Boolean.TRUE.equals(user.getIsWholesale());
     }
 }
@@ -0,0 +1,45 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Product;
+import com.vegstore.entity.Supplier;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only copy of a {@link Product} as held in the {@link CatalogService} snapshot. Property names
+ * match the entity's so catalog templates render either.
+ */
+@Value
+public class CatalogProduct {
+
+    Long id;
+    String name;
+    String description;
+    BigDecimal retailPricePerKg;
+    BigDecimal wholesalePricePerKg;
+    Double minWholesaleQuantityKg;
+    Double stockKg;
+    String category;
+    String imageUrl;
+    SupplierInfo supplier;
+
+    @Value
+    public static class SupplierInfo {
+        Long id;
+        String name;
+        String address;
+    }
+
+    static CatalogProduct of(Product product) {
+        Supplier supplier = product.getSupplier();
+        return new CatalogProduct(product.getId(), product.getName(), product.getDescription(),
+                product.getRetailPricePerKg(), product.getWholesalePricePerKg(), product.getMinWholesaleQuantityKg(),
+                product.getStockKg(), product.getCategory(), product.getImageUrl(),
+                supplier != null ? new SupplierInfo(supplier.getId(), supplier.getName(), supplier.getAddress()) : null);
+    }
+
+    public boolean isInStock() {
+        return stockKg != null && stockKg > 0;
+    }
+}
@@ -0,0 +1,464 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.entity.Product;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.SearchSynonymRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The storefront catalog, served from an immutable in-memory snapshot. Readers take whatever snapshot
+ * is current with a single volatile read: no lock, no query. Writers patch a copy after product,
+ * stock, supplier and order commits, re-reading only the products that changed, and publish the
+ * result with a new version. Writers read the database under one lock, so an older read never
+ * replaces a newer one. Stock moved by orders is queued and applied by a single publisher thread,
+ * which takes every product queued since its last pass, so a burst of checkouts costs one refresh.
+ * A periodic full rebuild picks up writes made elsewhere.
+ */
+@Service
+@Slf4j
+public class CatalogService {
+
+    /** Storefront listing orders; descending ones read the ascending view backwards. */
+    public enum ProductSort {
+        NAME_ASC(false, false), NAME_DESC(false, true), PRICE_ASC(true, false), PRICE_DESC(true, true);
+
+        final boolean byPrice;
+        final boolean descending;
+
+        ProductSort(boolean byPrice, boolean descending) {
+            this.byPrice = byPrice;
+            this.descending = descending;
+        }
+
+        /** From the page's "name-asc" style values; anything else sorts by name. */
+        public static ProductSort parse(String value) {
+            for (ProductSort sort : values()) {
+                if (sort.name().replace('_', '-').equalsIgnoreCase(value)) {
+                    return sort;
+                }
+            }
+            return NAME_ASC;
+        }
+
+        public String value() {
+            return name().replace('_', '-').toLowerCase();
+        }
+    }
+
+    /** One published state of the catalog; never modified after construction. */
+    public record Snapshot(long version, List<CatalogProduct> products, List<CatalogProduct> available,
+                           Map<Long, CatalogProduct> byId, ProductSearchIndex searchIndex,
+                           ProductSuggestions suggestions, Map<String, List<String>> synonyms, Views views) {
+
+        static final Snapshot EMPTY = new Snapshot(0, List.of(), List.of(), Map.of(), ProductSearchIndex.EMPTY,
+                ProductSuggestions.EMPTY, Map.of(), new Views(List.of()));
+
+        static Snapshot of(long version, Collection<CatalogProduct> products, ProductSearchIndex searchIndex,
+                           ProductSuggestions suggestions, Map<String, List<String>> synonyms) {
+            List<CatalogProduct> sorted = new ArrayList<>(products);
+            sorted.sort(Comparator.comparing(CatalogProduct::getId));
+            Map<Long, CatalogProduct> byId = new HashMap<>();
+            for (CatalogProduct product : sorted) {
+                byId.put(product.getId(), product);
+            }
+            List<CatalogProduct> all = List.copyOf(sorted);
+            return new Snapshot(version, all, sorted.stream().filter(CatalogProduct::isInStock).toList(),
+                    Map.copyOf(byId), searchIndex, suggestions, synonyms, new Views(all));
+        }
+
+        // Replaces, adds or (null) removes the changed products; the ID-ordered lists are merged, not re-sorted
+        Snapshot withChanges(long version, SortedMap<Long, CatalogProduct> changes, ProductSearchIndex searchIndex) {
+            Map<Long, CatalogProduct> patched = new HashMap<>(byId);
+            changes.forEach((id, product) -> {
+                if (product != null) {
+                    patched.put(id, product);
+                } else {
+                    patched.remove(id);
+                }
+            });
+            List<CatalogProduct> all = merge(products, changes, product -> true);
+            return new Snapshot(version, all, merge(available, changes, CatalogProduct::isInStock),
+                    Collections.unmodifiableMap(patched), searchIndex, suggestions, synonyms, new Views(all));
+        }
+
+        Snapshot withSuggestions(ProductSuggestions suggestions) {
+            return new Snapshot(version, products, available, byId, searchIndex, suggestions, synonyms, views);
+        }
+
+        private static List<CatalogProduct> merge(List<CatalogProduct> sorted, SortedMap<Long, CatalogProduct> changes,
+                                                  Predicate<CatalogProduct> keep) {
+            List<CatalogProduct> merged = new ArrayList<>(sorted.size() + changes.size());
+            Iterator<Map.Entry<Long, CatalogProduct>> pending = changes.entrySet().iterator();
+            Map.Entry<Long, CatalogProduct> next = pending.hasNext() ? pending.next() : null;
+            for (CatalogProduct product : sorted) {
+                while (next != null && next.getKey() < product.getId()) {
+                    addIfKept(merged, next.getValue(), keep);
+                    next = pending.hasNext() ? pending.next() : null;
+                }
+                if (next != null && next.getKey().equals(product.getId())) {
+                    addIfKept(merged, next.getValue(), keep);
+                    next = pending.hasNext() ? pending.next() : null;
+                } else {
+                    merged.add(product);
+                }
+            }
+            for (; next != null; next = pending.hasNext() ? pending.next() : null) {
+                addIfKept(merged, next.getValue(), keep);
+            }
+            return Collections.unmodifiableList(merged);
+        }
+
+        private static void addIfKept(List<CatalogProduct> merged, CatalogProduct product, Predicate<CatalogProduct> keep) {
+            if (product != null && keep.test(product)) {
+                merged.add(product);
+            }
+        }
+
+        Snapshot withSynonyms(long version, Map<String, List<String>> synonyms) {
+            return new Snapshot(version, products, available, byId, searchIndex, suggestions, synonyms, views);
+        }
+    }
+
+    /**
+     * Sorted, optionally category-filtered copies of a snapshot's products for paged listings. Each is
+     * built the first time a page asks for it, so the many snapshots published between page views
+     * (every stock move makes one) cost nothing extra.
+     */
+    static final class Views {
+
+        private static final Comparator<CatalogProduct> BY_NAME = Comparator
+                .comparing(CatalogProduct::getName, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(CatalogProduct::getId);
+        private static final Comparator<CatalogProduct> BY_PRICE = Comparator
+                .comparing(CatalogProduct::getRetailPricePerKg)
+                .thenComparing(CatalogProduct::getId);
+
+        private final List<CatalogProduct> products;
+        private final Map<String, CatalogProduct[]> sorted = new ConcurrentHashMap<>();
+        private volatile List<String> categories;
+
+        Views(List<CatalogProduct> products) {
+            this.products = products;
+        }
+
+        CatalogProduct[] sorted(boolean byPrice, String category) {
+            return sorted.computeIfAbsent((byPrice ? "price:" : "name:") + (category == null ? "" : category), key ->
+                    products.stream()
+                            .filter(product -> category == null || category.equals(product.getCategory()))
+                            .sorted(byPrice ? BY_PRICE : BY_NAME)
+                            .toArray(CatalogProduct[]::new));
+        }
+
+        List<String> categories() {
+            List<String> result = categories;
+            if (result == null) {
+                result = products.stream().map(CatalogProduct::getCategory).filter(Objects::nonNull)
+                        .distinct().sorted().toList();
+                categories = result;
+            }
+            return result;
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final SearchSynonymRepository searchSynonymRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate readTemplate;
+    private final int maxSearchResults;
+    private final int maxSuggestions;
+    private final int popularityDays;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Products whose stock orders have moved, waiting for the publisher thread
+    private final BlockingQueue<Long> stockChanges = new LinkedBlockingQueue<>();
+    private volatile boolean publishing;
+    private Thread publisher;
+
+    public CatalogService(ProductRepository productRepository,
+                          SearchSynonymRepository searchSynonymRepository,
+                          OrderRepository orderRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${vegstore.search.max-results:100}") int maxSearchResults,
+                          @Value("${vegstore.search.suggest.max-results:10}") int maxSuggestions,
+                          @Value("${vegstore.search.suggest.popularity-days:90}") int popularityDays) {
+        this.productRepository = productRepository;
+        this.searchSynonymRepository = searchSynonymRepository;
+        this.orderRepository = orderRepository;
+        this.maxSearchResults = maxSearchResults;
+        this.maxSuggestions = Math.max(1, maxSuggestions);
+        this.popularityDays = popularityDays;
+        // Listeners run after the writer's commit, still bound to its session; read in a fresh one
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate.setReadOnly(true);
+    }
+
+    @PostConstruct
+    void startPublisher() {
+        publishing = true;
+        publisher = Thread.ofVirtual().name("catalog-publisher").start(this::publishLoop);
+    }
+
+    @PreDestroy
+    void stopPublisher() throws InterruptedException {
+        publishing = false;
+        publisher.join(Duration.ofSeconds(10));
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public List<CatalogProduct> getAllProducts() {
+        return snapshot.products();
+    }
+
+    /** Products with stock left, as shown on the home page. */
+    public List<CatalogProduct> getAvailableProducts() {
+        return snapshot.available();
+    }
+
+    public CatalogProduct getProduct(Long id) {
+        CatalogProduct product = snapshot.byId().get(id);
+        if (product == null) {
+            throw new RuntimeException("Product not found");
+        }
+        return product;
+    }
+
+    /**
+     * Products matching any word of the query, or a synonym or near-miss spelling of it, in name,
+     * category or description, best match first (capped).
+     */
+    public List<CatalogProduct> search(String query) {
+        // One snapshot for both steps, so every ID resolves
+        Snapshot current = snapshot;
+        return current.searchIndex().search(query, maxSearchResults, current.synonyms()).stream()
+                .map(current.byId()::get)
+                .toList();
+    }
+
+    /**
+     * A page of the storefront listing, optionally one category, in the given order. The cursor holds
+     * the last item's sort value and ID; the next page starts from a binary search for it.
+     */
+    public KeysetPage<CatalogProduct> getProductPage(String category, ProductSort sort, String cursor, int size) {
+        CatalogProduct[] view = snapshot.views().sorted(sort.byPrice, KeysetPage.blankToNull(category));
+
+        int position = sort.descending ? view.length - 1 : 0;
+        List<String> after = KeysetPage.decode(cursor, 2);
+        if (!after.isEmpty()) {
+            String value = after.get(0);
+            BigDecimal price = sort.byPrice ? KeysetPage.parse(value, BigDecimal::new) : null;
+            long id = KeysetPage.parse(after.get(1), Long::parseLong);
+            // Ascending: lo ends at the first item after the cursor's key. Descending: at the first
+            // item not before it, so the page continues from the one just below
+            int lo = 0;
+            int hi = view.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int compared = sort.byPrice
+                        ? view[mid].getRetailPricePerKg().compareTo(price)
+                        : String.CASE_INSENSITIVE_ORDER.compare(view[mid].getName(), value);
+                long midId = view[mid].getId();
+                if (compared < 0 || (compared == 0 && (sort.descending ? midId < id : midId <= id))) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            position = sort.descending ? lo - 1 : lo;
+        }
+
+        List<CatalogProduct> rows = new ArrayList<>(size + 1);
+        int step = sort.descending ? -1 : 1;
+        for (int i = position; i >= 0 && i < view.length && rows.size() <= size; i += step) {
+            rows.add(view[i]);
+        }
+        return KeysetPage.of(rows, size, product -> List.of(
+                sort.byPrice ? product.getRetailPricePerKg().toPlainString() : product.getName(), product.getId()));
+    }
+
+    /** Categories present in the catalog, for listing filters. */
+    public List<String> getCategories() {
+        return snapshot.views().categories();
+    }
+
+    /** Typeahead: products with a name word starting with the prefix, best sellers first. */
+    public List<CatalogProduct> suggest(String prefix, int limit) {
+        Snapshot current = snapshot;
+        return current.suggestions().suggest(prefix, limit).stream()
+                .map(current.byId()::get)
+                .toList();
+    }
+
+    public Map<String, Object> getSearchFootprint() {
+        Snapshot current = snapshot;
+        Map<String, Object> footprint = new LinkedHashMap<>();
+        footprint.put("catalogVersion", current.version());
+        footprint.putAll(current.searchIndex().footprint());
+        footprint.put("synonymWords", current.synonyms().size());
+        footprint.put("suggestions", current.suggestions().footprint());
+        return footprint;
+    }
+
+    // CreateAdminUser saves the demo products straight through the repository, after this bean is built
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+        log.info("Catalog snapshot v{} built with {} products, search index {}", snapshot.version(),
+                snapshot.products().size(), snapshot.searchIndex().footprint());
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.catalog.rebuild-minutes:10}",
+            initialDelayString = "${vegstore.catalog.rebuild-minutes:10}", timeUnit = TimeUnit.MINUTES)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            List<CatalogProduct> products = readTemplate.execute(status ->
+                    productRepository.findAllWithSupplier().stream().map(CatalogProduct::of).toList());
+            snapshot = Snapshot.of(snapshot.version() + 1, products, ProductSearchIndex.build(products),
+                    ProductSuggestions.build(products, readPopularity(), maxSuggestions), readSynonyms());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductEvent(ProductEvent event) {
+        refresh(List.of(event.productId()));
+    }
+
+    // Supplier names and addresses are copied into products; a supplier change is rare enough to rebuild
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSupplierEvent(SupplierEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSearchSynonymEvent(SearchSynonymEvent event) {
+        rebuildLock.lock();
+        try {
+            snapshot = snapshot.withSynonyms(snapshot.version() + 1, readSynonyms());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Orders take stock directly through the repository; the checkout thread only queues the products
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        if (event.type() == OrderEvent.Type.CREATED) {
+            event.lines().forEach(line -> stockChanges.add(line.productId()));
+        }
+    }
+
+    private void publishLoop() {
+        Set<Long> batch = new LinkedHashSet<>();
+        while (publishing || !stockChanges.isEmpty()) {
+            try {
+                Long first = stockChanges.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything queued while the last refresh ran goes into this one, each product once
+                List<Long> rest = new ArrayList<>();
+                stockChanges.drainTo(rest);
+                batch.addAll(rest);
+                refresh(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // The next full rebuild picks these products up
+                log.error("Catalog refresh of {} products failed: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Re-reads the given products and publishes a copy of the snapshot with them replaced or removed
+    private void refresh(List<Long> productIds) {
+        rebuildLock.lock();
+        try {
+            Map<Long, CatalogProduct> changed = readTemplate.execute(status -> {
+                Map<Long, CatalogProduct> read = new HashMap<>();
+                for (Product product : productRepository.findAllWithSupplierByIdIn(productIds)) {
+                    read.put(product.getId(), CatalogProduct.of(product));
+                }
+                return read;
+            });
+            Snapshot current = snapshot;
+            // Null marks a product that is gone
+            SortedMap<Long, CatalogProduct> changes = new TreeMap<>();
+            // Stock moves are the common case and leave the search index as it is
+            List<CatalogProduct> unindexed = new ArrayList<>();
+            List<CatalogProduct> indexed = new ArrayList<>();
+            boolean renamed = false;
+            for (Long id : productIds) {
+                CatalogProduct before = current.byId().get(id);
+                CatalogProduct after = changed.get(id);
+                changes.put(id, after);
+                renamed |= before == null || after == null || ProductSuggestions.nameChanged(before, after);
+                if (before == null || after == null || ProductSearchIndex.textChanged(before, after)) {
+                    if (before != null) {
+                        unindexed.add(before);
+                    }
+                    if (after != null) {
+                        indexed.add(after);
+                    }
+                }
+            }
+            Snapshot next = current.withChanges(current.version() + 1, changes,
+                    current.searchIndex().withChanges(unindexed, indexed));
+            snapshot = renamed ? next.withSuggestions(current.suggestions().withProducts(next.products())) : next;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Kg sold per product over the last popularityDays; refreshed with each full rebuild
+    private Map<Long, Double> readPopularity() {
+        LocalDateTime now = LocalDateTime.now();
+        return readTemplate.execute(status -> {
+            Map<Long, Double> popularity = new HashMap<>();
+            for (Object[] row : orderRepository.sumQuantityByProductBetween(Order.OrderStatus.CANCELLED,
+                    now.minusDays(popularityDays), now)) {
+                popularity.put((Long) row[0], ((Number) row[1]).doubleValue());
+            }
+            return popularity;
+        });
+    }
+
+    // The dictionary is small and admin-edited, so it is simply re-read whole
+    private Map<String, List<String>> readSynonyms() {
+        return readTemplate.execute(status -> SearchSynonymService.expansions(searchSynonymRepository.findAll()));
+    }
+}
@@ -0,0 +1,256 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.CommissionLedger;
+import com.vegstore.entity.Order;
+import com.vegstore.repository.CommissionLedgerRepository;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.SalespersonStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Commission ledger: completed-order revenue per salesperson, held as fixed-point paise in striped
+ * {@link LongAdder}s so completions never contend, and flushed to {@code commission_ledger}
+ * periodically and on shutdown. Reads are O(1). The accounts are seeded from that table on startup;
+ * the aggregate over COMPLETED orders only backfills an empty table, and otherwise serves
+ * {@link #verify()} and an explicit {@link #rebuild()}.
+ */
+@Service
+@Slf4j
+public class CommissionLedgerService {
+
+    private static final BigDecimal COMMISSION_RATE = BigDecimal.valueOf(0.1);
+
+    private static final class Account {
+        // Everything earned (what reads see) and the part not yet written to the table
+        final LongAdder revenuePaise = new LongAdder();
+        final LongAdder orders = new LongAdder();
+        final LongAdder unflushedPaise = new LongAdder();
+        final LongAdder unflushedOrders = new LongAdder();
+
+        void accrue(long paise, long count) {
+            revenuePaise.add(paise);
+            orders.add(count);
+            unflushedPaise.add(paise);
+            unflushedOrders.add(count);
+        }
+    }
+
+    private final CommissionLedgerRepository ledgerRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderCommitFence commitFence;
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public CommissionLedgerService(CommissionLedgerRepository ledgerRepository,
+                                   OrderRepository orderRepository,
+                                   OrderCommitFence commitFence,
+                                   PlatformTransactionManager transactionManager) {
+        this.ledgerRepository = ledgerRepository;
+        this.orderRepository = orderRepository;
+        this.commitFence = commitFence;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void load() {
+        List<CommissionLedger> rows = ledgerRepository.findAll();
+        if (rows.isEmpty()) {
+            // First run against an existing database: nothing flushed yet, so start from the orders
+            int backfilled = rebuild();
+            log.info("Commission ledger was empty, backfilled {} salespeople from completed orders", backfilled);
+            return;
+        }
+        for (CommissionLedger row : rows) {
+            Account account = account(row.getSalespersonId());
+            account.revenuePaise.add(row.getCompletedRevenuePaise());
+            account.orders.add(row.getCompletedOrders());
+        }
+        log.info("Commission ledger loaded for {} salespeople", accounts.size());
+    }
+
+    // Only committed completions count; a rolled-back status change never accrues
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        if (event.type() != OrderEvent.Type.STATUS_CHANGED || event.salespersonId() == null) {
+            return;
+        }
+        boolean completed = event.status() == Order.OrderStatus.COMPLETED;
+        boolean wasCompleted = event.previousStatus() == Order.OrderStatus.COMPLETED;
+        if (completed == wasCompleted) {
+            return;
+        }
+        long paise = toPaise(event.totalAmount());
+        account(event.salespersonId()).accrue(completed ? paise : -paise, completed ? 1 : -1);
+    }
+
+    public BigDecimal getCommission(Long salespersonId) {
+        Account account = accounts.get(salespersonId);
+        return account == null ? BigDecimal.ZERO.setScale(2) : commissionOf(account.revenuePaise.sum());
+    }
+
+    /** Salesperson ID to commission earned. */
+    public Map<Long, BigDecimal> getCommissions() {
+        Map<Long, BigDecimal> commissions = new HashMap<>();
+        accounts.forEach((id, account) -> commissions.put(id, commissionOf(account.revenuePaise.sum())));
+        return commissions;
+    }
+
+    /** Compares the in-memory ledger with a fresh aggregate over COMPLETED orders. */
+    public Map<String, Object> verify() {
+        Map<Long, long[]> expected = completedTotals();
+        Set<Long> ids = new TreeSet<>(expected.keySet());
+        ids.addAll(accounts.keySet());
+
+        List<Map<String, Object>> mismatches = new ArrayList<>();
+        for (Long id : ids) {
+            long[] want = expected.getOrDefault(id, new long[2]);
+            Account account = accounts.get(id);
+            long havePaise = account != null ? account.revenuePaise.sum() : 0;
+            long haveOrders = account != null ? account.orders.sum() : 0;
+            if (want[0] != havePaise || want[1] != haveOrders) {
+                Map<String, Object> mismatch = new LinkedHashMap<>();
+                mismatch.put("salespersonId", id);
+                mismatch.put("expectedRevenuePaise", want[0]);
+                mismatch.put("ledgerRevenuePaise", havePaise);
+                mismatch.put("expectedOrders", want[1]);
+                mismatch.put("ledgerOrders", haveOrders);
+                mismatches.add(mismatch);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("consistent", mismatches.isEmpty());
+        result.put("salespeopleChecked", ids.size());
+        result.put("mismatches", mismatches);
+        return result;
+    }
+
+    /**
+     * Overwrites the table and the in-memory accounts with the aggregate over COMPLETED orders, for
+     * when {@link #verify()} reports drift (e.g. deltas lost to a crash before a flush).
+     * Returns the number of salespeople.
+     */
+    public int rebuild() {
+        flushLock.lock();
+        try {
+            // Salesperson ID to {revenue, orders, unflushed revenue, unflushed orders} when the aggregate ran
+            Map<Long, long[]> covered = new HashMap<>();
+            Map<Long, long[]> totals = transactionTemplate.execute(status -> {
+                Map<Long, long[]> expected = commitFence.exclusive(() -> {
+                    accounts.forEach((id, account) -> covered.put(id, new long[]{account.revenuePaise.sum(),
+                            account.orders.sum(), account.unflushedPaise.sum(), account.unflushedOrders.sum()}));
+                    return completedTotals();
+                });
+                Map<Long, CommissionLedger> rows = new HashMap<>();
+                for (CommissionLedger row : ledgerRepository.findAll()) {
+                    rows.put(row.getSalespersonId(), row);
+                }
+                Set<Long> ids = new HashSet<>(expected.keySet());
+                ids.addAll(rows.keySet());
+                for (Long id : ids) {
+                    long[] want = expected.getOrDefault(id, new long[2]);
+                    CommissionLedger row = rows.getOrDefault(id, CommissionLedger.builder().salespersonId(id).build());
+                    row.setCompletedRevenuePaise(want[0]);
+                    row.setCompletedOrders(want[1]);
+                    ledgerRepository.save(row);
+                }
+                return expected;
+            });
+            // Correct each account to the aggregate as of the fence; accruals made since stay on top of it
+            Set<Long> ids = new HashSet<>(totals.keySet());
+            ids.addAll(covered.keySet());
+            for (Long id : ids) {
+                long[] want = totals.getOrDefault(id, new long[2]);
+                long[] seen = covered.getOrDefault(id, new long[4]);
+                Account account = account(id);
+                account.revenuePaise.add(want[0] - seen[0]);
+                account.orders.add(want[1] - seen[1]);
+                // The rewritten rows include everything that was unflushed then
+                account.unflushedPaise.add(-seen[2]);
+                account.unflushedOrders.add(-seen[3]);
+            }
+            return totals.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.commission.flush-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        flushLock.lock();
+        try {
+            accounts.forEach(this::flushAccount);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+        log.info("Commission ledger flushed on shutdown");
+    }
+
+    private void flushAccount(Long salespersonId, Account account) {
+        // sumThenReset takes each stripe atomically, so concurrent accruals land in this flush or the next
+        long paise = account.unflushedPaise.sumThenReset();
+        long orders = account.unflushedOrders.sumThenReset();
+        if (paise == 0 && orders == 0) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (ledgerRepository.addToLedger(salespersonId, paise, orders) == 0) {
+                    ledgerRepository.save(CommissionLedger.builder()
+                            .salespersonId(salespersonId)
+                            .completedRevenuePaise(paise)
+                            .completedOrders(orders)
+                            .build());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Put the delta back so the next flush retries it
+            account.unflushedPaise.add(paise);
+            account.unflushedOrders.add(orders);
+            log.error("Commission ledger flush failed for salesperson {}: {}", salespersonId, e.getMessage());
+        }
+    }
+
+    // Salesperson ID to {revenue paise, order count} over COMPLETED orders
+    private Map<Long, long[]> completedTotals() {
+        Map<Long, long[]> totals = new HashMap<>();
+        for (SalespersonStats stats : orderRepository.getSalespersonPerformance(Order.OrderStatus.COMPLETED)) {
+            totals.put(stats.getSalespersonId(), new long[]{toPaise(stats.getRevenue()), stats.getCompletedOrders()});
+        }
+        return totals;
+    }
+
+    private Account account(Long salespersonId) {
+        return accounts.computeIfAbsent(salespersonId, id -> new Account());
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal commissionOf(long revenuePaise) {
+        return BigDecimal.valueOf(revenuePaise).multiply(COMMISSION_RATE).movePointLeft(2).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,58 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Resolves the signed-in user. The principal comes straight from the session; the full
+ * {@link User} is resolved at most once per request, through {@link UserCache}.
+ */
+@Service
+@RequiredArgsConstructor
+public class CurrentUserService {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentUserService.class.getName() + ".user";
+
+    private final UserCache userCache;
+
+    /** The session principal, or null when nobody is signed in. */
+    public UserPrincipal getPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return null;
+    }
+
+    /** The signed-in user, or null when nobody is signed in or the account no longer exists. */
+    public User findUser() {
+        UserPrincipal principal = getPrincipal();
+        if (principal == null) {
+            return null;
+        }
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user) {
+            return user;
+        }
+        User user = userCache.get(principal.getId()).orElse(null);
+        if (request != null && user != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    /** The signed-in user; throws when there is none. */
+    public User getUser() {
+        User user = findUser();
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user;
+    }
+}
@@ -39,16 +39,11 @@ import com.vegstore.entity.User;
 import com.vegstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.Collections;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -71,20 +66,9 @@ public class CustomUserDetailsService implements UserDetailsService {
         log.info("Role: {}", user.getRole());
         log.info("Password hash (first 20 chars): {}", user.getPassword().substring(0, 20));
 
-        Collection<? extends GrantedAuthority> authorities =
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()));
-
-        log.info("Authorities: {}", authorities);
-
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                user.getActive(), // enabled
-                true, // accountNonExpired
-                true, // credentialsNonExpired
-                true, // accountNonLocked
-                authorities
-        );
+        UserPrincipal principal = UserPrincipal.of(user);
+        log.info("Authorities: {}", principal.getAuthorities());
+        return principal;
     }
 
     public User getUserByUsername(String username) {
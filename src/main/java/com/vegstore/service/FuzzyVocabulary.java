@@ -0,0 +1,192 @@
+package com.vegstore.service;
+
+import java.util.*;
+
+/**
+ * Typo-tolerant lookup over the search vocabulary. Words are keyed by a crude singular ("tomatoes"
+ * becomes "tomato") and the keys kept sorted, which makes them an implicit trie: keys sharing a prefix
+ * sit in one run. A lookup walks that trie carrying the edit-distance row of the prefix so far, the
+ * way a Levenshtein automaton would, and abandons a run as soon as its prefix is more edits away than
+ * allowed. Like most fuzzy queries it takes the first letter as typed, which confines the walk to
+ * one run and keeps it to the few prefixes near the term however large the vocabulary is.
+ * Immutable; adding words yields a new copy. Words that leave the catalog stay until the next full
+ * build, so callers check hits against live postings.
+ */
+final class FuzzyVocabulary {
+
+    // Shorter words are too close to each other for a typo to pick the right one
+    static final int MIN_LENGTH = 4;
+    // Keys this long tolerate two edits, shorter ones one
+    private static final int TWO_EDIT_LENGTH = 8;
+
+    static final FuzzyVocabulary EMPTY = new FuzzyVocabulary(new String[0], new String[0][]);
+
+    // Sorted, distinct; words[i] are the vocabulary words keyed by keys[i]
+    private final String[] keys;
+    private final String[][] words;
+
+    private FuzzyVocabulary(String[] keys, String[][] words) {
+        this.keys = keys;
+        this.words = words;
+    }
+
+    /** A copy with the eligible words among {@code added} included. */
+    FuzzyVocabulary with(Collection<String> added) {
+        TreeMap<String, Set<String>> additions = new TreeMap<>();
+        for (String word : added) {
+            if (eligible(word)) {
+                String key = key(word);
+                int existing = Arrays.binarySearch(keys, key);
+                if (existing < 0 || !Arrays.asList(words[existing]).contains(word)) {
+                    additions.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(word);
+                }
+            }
+        }
+        if (additions.isEmpty()) {
+            return this;
+        }
+        // Merge two sorted key lists
+        List<String> newKeys = new ArrayList<>(keys.length + additions.size());
+        List<String[]> newWords = new ArrayList<>(keys.length + additions.size());
+        int i = 0;
+        for (Map.Entry<String, Set<String>> addition : additions.entrySet()) {
+            while (i < keys.length && keys[i].compareTo(addition.getKey()) < 0) {
+                newKeys.add(keys[i]);
+                newWords.add(words[i++]);
+            }
+            List<String> merged = new ArrayList<>();
+            if (i < keys.length && keys[i].equals(addition.getKey())) {
+                merged.addAll(Arrays.asList(words[i++]));
+            }
+            merged.addAll(addition.getValue());
+            newKeys.add(addition.getKey());
+            newWords.add(merged.toArray(new String[0]));
+        }
+        while (i < keys.length) {
+            newKeys.add(keys[i]);
+            newWords.add(words[i++]);
+        }
+        return new FuzzyVocabulary(newKeys.toArray(new String[0]), newWords.toArray(new String[0][]));
+    }
+
+    /** Words whose key starts with the same letter and is within one edit of the term's (two for long terms). */
+    List<String> near(String term) {
+        String key = key(term);
+        if (keys.length == 0 || key.length() < MIN_LENGTH) {
+            return List.of();
+        }
+        int tolerance = key.length() >= TWO_EDIT_LENGTH ? 2 : 1;
+        int[] row = new int[key.length() + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = j;
+        }
+        // Keys are at least MIN_LENGTH long, so all of them have a first letter to compare
+        char first = key.charAt(0);
+        int lo = runStart(first);
+        if (lo == keys.length || keys[lo].charAt(0) != first) {
+            return List.of();
+        }
+        List<String> near = new ArrayList<>();
+        walk(key, tolerance, lo, runEnd(lo, keys.length, 0, first), 1, step(row, key, first), near);
+        return near;
+    }
+
+    int keys() {
+        return keys.length;
+    }
+
+    // Letters only: codes and sizes with digits in them aren't misspelled, just different
+    static boolean eligible(String word) {
+        if (word.length() < MIN_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isLetter(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Plurals share a key with their singular, so "tomatto" still lands near "tomatoes"
+    static String key(String word) {
+        int length = word.length();
+        if (length > MIN_LENGTH && (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes"))) {
+            return word.substring(0, length - 2);
+        }
+        if (length > MIN_LENGTH && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, length - 1);
+        }
+        return word;
+    }
+
+    // Keys in [lo, hi) share their first depth characters; row holds the edit distance from that
+    // prefix to each prefix of the term
+    private void walk(String term, int tolerance, int lo, int hi, int depth, int[] row, List<String> near) {
+        int i = lo;
+        // The prefix itself, if it is a key, sorts first in its run
+        if (keys[i].length() == depth) {
+            if (row[term.length()] <= tolerance) {
+                near.addAll(Arrays.asList(words[i]));
+            }
+            i++;
+        }
+        while (i < hi) {
+            char c = keys[i].charAt(depth);
+            int end = runEnd(i, hi, depth, c);
+            int[] next = step(row, term, c);
+            if (min(next) <= tolerance) {
+                walk(term, tolerance, i, end, depth + 1, next, near);
+            }
+            i = end;
+        }
+    }
+
+    // First index whose first letter is c or later
+    private int runStart(char c) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].charAt(0) < c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // First index in (from, hi) whose character at depth follows c
+    private int runEnd(int from, int hi, int depth, char c) {
+        int lo = from + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].charAt(depth) <= c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Next Levenshtein row after appending c to the prefix
+    private static int[] step(int[] row, String term, char c) {
+        int[] next = new int[row.length];
+        next[0] = row[0] + 1;
+        for (int j = 1; j < row.length; j++) {
+            int substitute = row[j - 1] + (term.charAt(j - 1) == c ? 0 : 1);
+            next[j] = Math.min(substitute, Math.min(row[j], next[j - 1]) + 1);
+        }
+        return next;
+    }
+
+    private static int min(int[] row) {
+        int min = row[0];
+        for (int value : row) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+}
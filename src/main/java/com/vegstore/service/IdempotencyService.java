@@ -0,0 +1,106 @@
+package com.vegstore.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, expiring request-key store. The first caller for a key runs the work; replays and
+ * concurrent duplicates wait for that same result instead of running it again.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order, used to expire and evict the oldest keys first
+    private final Queue<Map.Entry<String, Entry>> order = new ConcurrentLinkedQueue<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public IdempotencyService(@Value("${vegstore.checkout.idempotency.ttl-minutes:30}") long ttlMinutes,
+                              @Value("${vegstore.checkout.idempotency.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = Duration.ofMinutes(ttlMinutes).toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> work) {
+        long now = System.nanoTime();
+        Entry mine = new Entry(new CompletableFuture<>(), now);
+
+        Entry existing = entries.putIfAbsent(key, mine);
+        while (existing != null) {
+            if (!existing.isExpired(now, ttlNanos)) {
+                log.info("Replaying result for request key {}", key);
+                return (T) await(existing.result);
+            }
+            // Expired: take the slot over, or go round again if another request beat us to it
+            if (entries.replace(key, existing, mine)) {
+                break;
+            }
+            existing = entries.putIfAbsent(key, mine);
+        }
+
+        order.add(Map.entry(key, mine));
+        evict(now);
+
+        try {
+            T value = work.get();
+            mine.result.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Failures of any kind, Errors included, are not remembered: the customer can retry with the
+            // same key, and duplicates already waiting on this entry get the failure instead of hanging
+            entries.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        Map.Entry<String, Entry> head;
+        while ((head = order.peek()) != null) {
+            Entry entry = head.getValue();
+            boolean expired = entry.isExpired(now, ttlNanos);
+            // In-flight keys are never evicted for size; their duplicates must still find them
+            boolean overSize = entries.size() > maxEntries && entry.result.isDone();
+            if (!expired && !overSize) {
+                return;
+            }
+            if (order.remove(head)) {
+                entries.remove(head.getKey(), entry);
+            }
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(CompletableFuture<Object> result, long createdAt) {
+        boolean isExpired(long now, long ttlNanos) {
+            return now - createdAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.vegstore.service;
+
+/**
+ * A page cursor that doesn't decode: stale, truncated or hand-edited. Pages fall back to the first
+ * page and JSON endpoints answer 400, see {@code GlobalControllerAdvice}.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException() {
+        super("Invalid page cursor");
+    }
+}
@@ -0,0 +1,78 @@
+package com.vegstore.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. Pages are read with "after this sort key" conditions
+ * instead of offsets, so fetching page 1000 costs the same as page 1. {@code next} is an opaque
+ * cursor for the following page, null on the last one.
+ */
+public record KeysetPage<T>(List<T> items, String next) {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 200;
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Trims a result read with one extra row to {@code size}; when the extra row is there, the cursor
+     * is built from the last kept item's sort key.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, List<?>> sortKey) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(List.copyOf(items), encode(sortKey.apply(items.get(size - 1))));
+    }
+
+    public static int clampSize(Integer size) {
+        return size == null || size <= 0 ? DEFAULT_SIZE : Math.min(size, MAX_SIZE);
+    }
+
+    /** The sort key values a cursor carries, as strings; empty for no cursor. */
+    public static List<String> decode(String cursor, int parts) {
+        if (cursor == null || cursor.isBlank()) {
+            return List.of();
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            List<String> values = List.of(decoded.split("\u0000", -1));
+            if (values.size() != parts) {
+                throw new IllegalArgumentException();
+            }
+            return values;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    /** One cursor value parsed back to its type; a value that doesn't parse is a bad cursor. */
+    public static <V> V parse(String value, Function<String, V> parser) {
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    /** Blank form fields mean "no filter". */
+    public static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static String encode(List<?> values) {
+        List<String> parts = new ArrayList<>(values.size());
+        for (Object value : values) {
+            parts.add(value == null ? "" : value.toString());
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join("\u0000", parts).getBytes(StandardCharsets.UTF_8));
+    }
+}
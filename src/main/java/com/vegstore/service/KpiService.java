@@ -0,0 +1,142 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.entity.User;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.SupplierRepository;
+import com.vegstore.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for the admin dashboard and user management page. Seeded with COUNT queries once the
+ * application is ready and then kept current from committed product, supplier, user and order
+ * events, so reading them never touches those tables. A periodic re-count corrects any drift from
+ * writes that bypass the services.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KpiService {
+
+    private final ProductRepository productRepository;
+    private final SupplierRepository supplierRepository;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+
+    private final AtomicLong products = new AtomicLong();
+    private final AtomicLong suppliers = new AtomicLong();
+    private final AtomicLong pendingOrders = new AtomicLong();
+    private final AtomicLong users = new AtomicLong();
+    private final AtomicLong activeUsers = new AtomicLong();
+    private final Map<User.Role, AtomicLong> usersByRole = new EnumMap<>(User.Role.class);
+
+    {
+        for (User.Role role : User.Role.values()) {
+            usersByRole.put(role, new AtomicLong());
+        }
+    }
+
+    // CreateAdminUser inserts the demo users, products and suppliers without events; count once it is done
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        recount();
+        log.info("KPI counters seeded: {}", getDashboardCounts());
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.kpi.recount-minutes:60}", initialDelayString = "${vegstore.kpi.recount-minutes:60}",
+            timeUnit = TimeUnit.MINUTES)
+    public void recount() {
+        products.set(productRepository.count());
+        suppliers.set(supplierRepository.count());
+        pendingOrders.set(orderRepository.countByStatus(Order.OrderStatus.PENDING));
+        users.set(userRepository.count());
+        activeUsers.set(userRepository.countByActiveTrue());
+        for (User.Role role : User.Role.values()) {
+            usersByRole.get(role).set(userRepository.countByRole(role));
+        }
+    }
+
+    /** Totals shown on the admin dashboard. */
+    public Map<String, Long> getDashboardCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("totalProducts", products.get());
+        counts.put("totalSuppliers", suppliers.get());
+        counts.put("pendingOrders", pendingOrders.get());
+        counts.put("totalUsers", users.get());
+        return counts;
+    }
+
+    /** Totals shown on the user management page. */
+    public Map<String, Long> getUserStats() {
+        long total = users.get();
+        long active = activeUsers.get();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("totalUsers", total);
+        stats.put("customers", usersByRole.get(User.Role.CUSTOMER).get());
+        stats.put("salespersons", usersByRole.get(User.Role.SALESPERSON).get());
+        stats.put("admins", usersByRole.get(User.Role.ADMIN).get());
+        stats.put("activeUsers", active);
+        stats.put("inactiveUsers", total - active);
+        return stats;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductEvent(ProductEvent event) {
+        switch (event.type()) {
+            case CREATED -> products.incrementAndGet();
+            case DELETED -> products.decrementAndGet();
+            default -> { }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSupplierEvent(SupplierEvent event) {
+        switch (event.type()) {
+            case CREATED -> suppliers.incrementAndGet();
+            case DELETED -> suppliers.decrementAndGet();
+            default -> { }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserEvent(UserEvent event) {
+        if (event.previousRole() != null) {
+            count(event.previousRole(), event.previousActive(), -1);
+        }
+        if (event.role() != null) {
+            count(event.role(), event.active(), 1);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        boolean pending = event.status() == Order.OrderStatus.PENDING;
+        boolean wasPending = event.type() != OrderEvent.Type.CREATED
+                && event.previousStatus() == Order.OrderStatus.PENDING;
+        if (pending != wasPending) {
+            pendingOrders.addAndGet(pending ? 1 : -1);
+        }
+    }
+
+    private void count(User.Role role, Boolean active, int delta) {
+        users.addAndGet(delta);
+        usersByRole.get(role).addAndGet(delta);
+        if (Boolean.TRUE.equals(active)) {
+            activeUsers.addAndGet(delta);
+        }
+    }
+}
@@ -0,0 +1,746 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.PurchaseRepository;
+import com.vegstore.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory columnar store of order line facts for admin analytics. Each line is a row across
+ * primitive column arrays held in fixed-size chunks; reports are fork/join scans over the columns
+ * and never touch entities. Loaded at startup, appended to after each committed order, and bounded
+ * by {@code vegstore.analytics.max-rows}: past that the oldest chunk is dropped, and reports whose
+ * range reaches back past the oldest row held say so ({@code truncated}, {@code retainedFrom}).
+ * Chunks readers can see are never written: status changes copy the columns they touch first.
+ *
+ * <p>Money is fixed-point paise and quantities are grams. An order's delivery fee (total minus its
+ * lines) is stored on its first line so revenue adds up to order totals. COGS prices the grams sold
+ * at each product's latest purchase cost when the report runs, as {@link ProfitAnalysisService}
+ * does, so the two differ only by rounding quantities to grams. There is deliberately no per-row cost
+ * column: a cost frozen into each line when it is stored would drift from that service with every
+ * purchase, and would cost another four bytes a row.
+ */
+@Service
+@Slf4j
+public class OrderAnalyticsEngine {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SPLIT_THRESHOLD = 16_384;
+    private static final int LOAD_PAGE_SIZE = 10_000;
+    // orderId (long) + eight int columns + status and flag bytes
+    private static final int BYTES_PER_ROW = 8 + 8 * 4 + 2;
+
+    private static final byte FIRST_LINE = 1;
+    private static final byte CANCELLED = (byte) Order.OrderStatus.CANCELLED.ordinal();
+    private static final byte COMPLETED = (byte) Order.OrderStatus.COMPLETED.ordinal();
+    private static final long COMMISSION_PERCENT = 10;
+    // Longest sales trend served; longer requests are cut to this many days
+    private static final int MAX_TREND_DAYS = 3660;
+
+    private static final class Chunk {
+        final long[] orderId;
+        final int[] day;
+        final int[] salespersonId;
+        final int[] customerId;
+        final int[] productId;
+        final int[] grams;
+        final int[] pricePaise;
+        final int[] subtotalPaise;
+        final int[] feePaise;
+        final byte[] status;
+        final byte[] flags;
+
+        Chunk() {
+            this(new long[CHUNK_SIZE], new int[CHUNK_SIZE], new int[CHUNK_SIZE], new int[CHUNK_SIZE], new int[CHUNK_SIZE],
+                    new int[CHUNK_SIZE], new int[CHUNK_SIZE], new int[CHUNK_SIZE], new int[CHUNK_SIZE],
+                    new byte[CHUNK_SIZE], new byte[CHUNK_SIZE]);
+        }
+
+        private Chunk(long[] orderId, int[] day, int[] salespersonId, int[] customerId, int[] productId, int[] grams,
+                      int[] pricePaise, int[] subtotalPaise, int[] feePaise, byte[] status, byte[] flags) {
+            this.orderId = orderId;
+            this.day = day;
+            this.salespersonId = salespersonId;
+            this.customerId = customerId;
+            this.productId = productId;
+            this.grams = grams;
+            this.pricePaise = pricePaise;
+            this.subtotalPaise = subtotalPaise;
+            this.feePaise = feePaise;
+            this.status = status;
+            this.flags = flags;
+        }
+
+        // Copies the columns that change after a row is written (status, salesperson, fee) and shares the rest
+        Chunk copyForUpdate() {
+            return new Chunk(orderId, day, salespersonId.clone(), customerId, productId, grams,
+                    pricePaise, subtotalPaise, feePaise.clone(), status.clone(), flags);
+        }
+    }
+
+    // Published after every write; readers scan rows [0, size) of the chunks they captured
+    private record State(Chunk[] chunks, int size, long evictedRows) {
+    }
+
+    private final OrderRepository orderRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final long maxRows;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile State state = new State(new Chunk[0], 0, 0);
+    private volatile Map<Long, Integer> costPaiseByProduct = Map.of();
+    // Rows appended under the write lock since the last publish(); readers don't see them until then
+    private Chunk[] pendingChunks;
+    private int pendingSize;
+    // Chunks already copied for this pending write, so each is copied at most once per publish()
+    private final BitSet copiedChunks = new BitSet();
+    // Order ID to the row of its first line, over the rows held; written under the write lock only
+    private final OrderRowIndex firstRows = new OrderRowIndex();
+
+    public OrderAnalyticsEngine(OrderRepository orderRepository,
+                                PurchaseRepository purchaseRepository,
+                                ProductRepository productRepository,
+                                UserRepository userRepository,
+                                @Value("${vegstore.analytics.max-rows:2000000}") long maxRows) {
+        this.orderRepository = orderRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.maxRows = Math.max(maxRows, 2L * CHUNK_SIZE);
+    }
+
+    @PostConstruct
+    void load() {
+        long start = System.nanoTime();
+        refreshCosts();
+
+        Long afterOrderId = 0L;
+        Long afterItemId = 0L;
+        long currentOrder = -1;
+        long orderTotalPaise = 0;
+        long linesPaise = 0;
+        int firstRow = -1;
+        List<Object[]> page;
+        do {
+            page = orderRepository.findOrderFactsAfter(afterOrderId, afterItemId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            writeLock.lock();
+            try {
+                for (Object[] row : page) {
+                    long orderId = (Long) row[0];
+                    int subtotal = (int) toPaise((BigDecimal) row[9]);
+                    boolean first = orderId != currentOrder;
+                    if (first) {
+                        currentOrder = orderId;
+                        orderTotalPaise = toPaise((BigDecimal) row[10]);
+                        linesPaise = 0;
+                    }
+                    int at = appendRow(orderId, ((LocalDateTime) row[2]).toLocalDate(), (Order.OrderStatus) row[3],
+                            (Long) row[4], (Long) row[5], (Long) row[6], (Double) row[7],
+                            (BigDecimal) row[8], subtotal, first);
+                    if (first) {
+                        firstRow = at;
+                    }
+                    // Lines of one order may span pages, so the fee is re-derived as each line arrives
+                    linesPaise += subtotal;
+                    if (firstRow >= 0) {
+                        setFee(firstRow, (int) (orderTotalPaise - linesPaise));
+                    }
+                }
+                // Rows shift down when the oldest chunk is dropped
+                firstRow -= publish();
+            } finally {
+                writeLock.unlock();
+            }
+            if (!page.isEmpty()) {
+                Object[] last = page.get(page.size() - 1);
+                afterOrderId = (Long) last[0];
+                afterItemId = (Long) last[1];
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        log.info("Analytics engine loaded {} order lines in {} ms ({} KB of columns)",
+                state.size(), (System.nanoTime() - start) / 1_000_000, heapBytes(state) / 1024);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        switch (event.type()) {
+            case CREATED -> append(event);
+            case CLAIMED, STATUS_CHANGED -> updateOrder(event.orderId(), event.status(), event.salespersonId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPurchaseEvent(PurchaseEvent event) {
+        refreshCosts();
+    }
+
+    // CreateAdminUser seeds purchases after load() through the repository, which publishes no PurchaseEvent
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshCostsWhenReady() {
+        refreshCosts();
+    }
+
+    /**
+     * Daily revenue (order totals of non-cancelled orders) for the last {@code requestedDays} days,
+     * under {@code trend}; the span is clamped to 1..{@value #MAX_TREND_DAYS} days.
+     */
+    public Map<String, Object> salesTrend(int requestedDays) {
+        int days = Math.max(1, Math.min(requestedDays, MAX_TREND_DAYS));
+        LocalDate today = LocalDate.now();
+        int fromDay = (int) today.minusDays(days - 1L).toEpochDay();
+        int toDay = (int) today.toEpochDay();
+
+        State current = state;
+        long[] paise = scan(current, new Scan<long[]>() {
+            public long[] create() {
+                return new long[days];
+            }
+
+            public void row(long[] acc, Chunk c, int r) {
+                if (counted(c, r, fromDay, toDay)) {
+                    acc[c.day[r] - fromDay] += c.subtotalPaise[r] + c.feePaise[r];
+                }
+            }
+
+            public long[] merge(long[] left, long[] right) {
+                for (int i = 0; i < left.length; i++) {
+                    left[i] += right[i];
+                }
+                return left;
+            }
+        });
+
+        Map<String, BigDecimal> trend = new LinkedHashMap<>();
+        for (int i = 0; i < days; i++) {
+            trend.put(LocalDate.ofEpochDay(fromDay + i).toString(), fromPaise(paise[i]));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("trend", trend);
+        putCoverage(report, current, fromDay);
+        return report;
+    }
+
+    /** Revenue, COGS, salary (commission on completed orders) and profit for orders in the range. */
+    public Map<String, Object> profit(LocalDate from, LocalDate to) {
+        int fromDay = fromDay(from);
+        int toDay = toDay(to);
+
+        State current = state;
+        ProfitSums sums = scan(current, new Scan<ProfitSums>() {
+            public ProfitSums create() {
+                return new ProfitSums();
+            }
+
+            public void row(ProfitSums acc, Chunk c, int r) {
+                if (counted(c, r, fromDay, toDay)) {
+                    long revenue = c.subtotalPaise[r] + c.feePaise[r];
+                    acc.revenuePaise += revenue;
+                    acc.gramsByProduct.merge(c.productId[r], (long) c.grams[r], Long::sum);
+                    if (c.status[r] == COMPLETED && c.salespersonId[r] != 0) {
+                        acc.completedPaise += revenue;
+                    }
+                }
+            }
+
+            public ProfitSums merge(ProfitSums left, ProfitSums right) {
+                left.revenuePaise += right.revenuePaise;
+                left.completedPaise += right.completedPaise;
+                right.gramsByProduct.forEach((id, grams) -> left.gramsByProduct.merge(id, grams, Long::sum));
+                return left;
+            }
+        });
+
+        Map<Long, Integer> costs = costPaiseByProduct;
+        long cogsMilliPaise = 0;
+        for (Map.Entry<Integer, Long> sold : sums.gramsByProduct.entrySet()) {
+            cogsMilliPaise += costMilliPaise(costs, sold.getKey(), sold.getValue());
+        }
+        BigDecimal revenue = fromPaise(sums.revenuePaise);
+        BigDecimal cogs = fromMilliPaise(cogsMilliPaise);
+        BigDecimal salary = commission(sums.completedPaise);
+
+        Map<String, Object> analysis = new LinkedHashMap<>();
+        analysis.put("revenue", revenue);
+        analysis.put("cogs", cogs);
+        analysis.put("salary", salary);
+        analysis.put("profit", revenue.subtract(cogs).subtract(salary));
+        putCoverage(analysis, current, fromDay);
+        return analysis;
+    }
+
+    /** Per-product kg sold, line revenue, COGS and gross profit, highest revenue first, under {@code products}. */
+    public Map<String, Object> productReport(LocalDate from, LocalDate to) {
+        int fromDay = fromDay(from);
+        int toDay = toDay(to);
+
+        // productId -> {grams, line revenue paise}
+        State current = state;
+        Map<Integer, long[]> byProduct = scan(current, new Scan<Map<Integer, long[]>>() {
+            public Map<Integer, long[]> create() {
+                return new HashMap<>();
+            }
+
+            public void row(Map<Integer, long[]> acc, Chunk c, int r) {
+                if (counted(c, r, fromDay, toDay)) {
+                    long[] sums = acc.computeIfAbsent(c.productId[r], id -> new long[2]);
+                    sums[0] += c.grams[r];
+                    sums[1] += c.subtotalPaise[r];
+                }
+            }
+
+            public Map<Integer, long[]> merge(Map<Integer, long[]> left, Map<Integer, long[]> right) {
+                right.forEach((id, sums) -> left.merge(id, sums, OrderAnalyticsEngine::addInto));
+                return left;
+            }
+        });
+
+        Map<Long, String> names = new HashMap<>();
+        for (Product product : productRepository.findAllById(toLongIds(byProduct.keySet()))) {
+            names.put(product.getId(), product.getName());
+        }
+
+        Map<Long, Integer> costs = costPaiseByProduct;
+        List<Map<String, Object>> products = new ArrayList<>();
+        byProduct.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+                .forEach(entry -> {
+                    long[] sums = entry.getValue();
+                    BigDecimal revenue = fromPaise(sums[1]);
+                    BigDecimal cogs = fromMilliPaise(costMilliPaise(costs, entry.getKey(), sums[0]));
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("productId", entry.getKey());
+                    row.put("name", names.get(entry.getKey().longValue()));
+                    row.put("quantityKg", BigDecimal.valueOf(sums[0]).movePointLeft(3));
+                    row.put("revenue", revenue);
+                    row.put("cogs", cogs);
+                    row.put("profit", revenue.subtract(cogs));
+                    products.add(row);
+                });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("products", products);
+        putCoverage(report, current, fromDay);
+        return report;
+    }
+
+    /** Per-salesperson completed orders, completed revenue and commission, most orders first, under {@code salespeople}. */
+    public Map<String, Object> salespersonReport(LocalDate from, LocalDate to) {
+        int fromDay = fromDay(from);
+        int toDay = toDay(to);
+
+        // salespersonId -> {completed orders, completed revenue paise}
+        State current = state;
+        Map<Integer, long[]> bySalesperson = scan(current, new Scan<Map<Integer, long[]>>() {
+            public Map<Integer, long[]> create() {
+                return new HashMap<>();
+            }
+
+            public void row(Map<Integer, long[]> acc, Chunk c, int r) {
+                if (c.status[r] == COMPLETED && c.salespersonId[r] != 0 && inRange(c, r, fromDay, toDay)) {
+                    long[] sums = acc.computeIfAbsent(c.salespersonId[r], id -> new long[2]);
+                    if ((c.flags[r] & FIRST_LINE) != 0) {
+                        sums[0]++;
+                    }
+                    sums[1] += c.subtotalPaise[r] + c.feePaise[r];
+                }
+            }
+
+            public Map<Integer, long[]> merge(Map<Integer, long[]> left, Map<Integer, long[]> right) {
+                right.forEach((id, sums) -> left.merge(id, sums, OrderAnalyticsEngine::addInto));
+                return left;
+            }
+        });
+
+        Map<Long, String> names = new HashMap<>();
+        for (User user : userRepository.findAllById(toLongIds(bySalesperson.keySet()))) {
+            names.put(user.getId(), user.getFullName());
+        }
+
+        List<Map<String, Object>> salespeople = new ArrayList<>();
+        bySalesperson.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(entry -> {
+                    long[] sums = entry.getValue();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("salespersonId", entry.getKey());
+                    row.put("name", names.get(entry.getKey().longValue()));
+                    row.put("completedOrders", sums[0]);
+                    row.put("revenue", fromPaise(sums[1]));
+                    row.put("commission", commission(sums[1]));
+                    salespeople.add(row);
+                });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("salespeople", salespeople);
+        putCoverage(report, current, fromDay);
+        return report;
+    }
+
+    /** Rows held, column memory in use and the configured bound. */
+    public Map<String, Object> footprint() {
+        State current = state;
+        Map<String, Object> footprint = new LinkedHashMap<>();
+        footprint.put("rows", current.size());
+        footprint.put("chunks", current.chunks().length);
+        footprint.put("rowsPerChunk", CHUNK_SIZE);
+        footprint.put("bytesPerRow", BYTES_PER_ROW);
+        footprint.put("heapBytes", heapBytes(current));
+        footprint.put("indexBytes", indexBytes());
+        footprint.put("heapMb", BigDecimal.valueOf(heapBytes(current)).divide(BigDecimal.valueOf(1024 * 1024), 1, RoundingMode.HALF_UP));
+        footprint.put("maxRows", maxRows);
+        footprint.put("maxHeapMb", BigDecimal.valueOf((maxRows + CHUNK_SIZE) * BYTES_PER_ROW).divide(BigDecimal.valueOf(1024 * 1024), 1, RoundingMode.HALF_UP));
+        footprint.put("evictedRows", current.evictedRows());
+        footprint.put("retainedFrom", retainedFrom(current));
+        return footprint;
+    }
+
+    private void append(OrderEvent event) {
+        LocalDate date = event.orderCreatedAt().toLocalDate();
+        writeLock.lock();
+        try {
+            long linesPaise = 0;
+            int firstRow = -1;
+            for (OrderEvent.Line line : event.lines()) {
+                int subtotal = (int) toPaise(line.subtotal());
+                int at = appendRow(event.orderId(), date, event.status(), event.salespersonId(), event.customerId(),
+                        line.productId(), line.quantityKg(), line.pricePerKg(), subtotal, firstRow < 0);
+                if (firstRow < 0) {
+                    firstRow = at;
+                }
+                linesPaise += subtotal;
+            }
+            if (firstRow >= 0) {
+                setFee(firstRow, (int) (toPaise(event.totalAmount()) - linesPaise));
+            }
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Lines of an order are contiguous from the row the index gives for it
+    private void updateOrder(Long orderId, Order.OrderStatus status, Long salespersonId) {
+        byte statusCode = (byte) status.ordinal();
+        int salesperson = salespersonId != null ? salespersonId.intValue() : 0;
+        writeLock.lock();
+        try {
+            int first = firstRows.get(orderId);
+            if (first < 0) {
+                // Already evicted
+                return;
+            }
+            beginWrite();
+            for (int row = first; row < pendingSize && pendingChunks[row >> CHUNK_BITS].orderId[row & CHUNK_MASK] == orderId; row++) {
+                Chunk c = writable(row);
+                c.status[row & CHUNK_MASK] = statusCode;
+                c.salespersonId[row & CHUNK_MASK] = salesperson;
+            }
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int appendRow(long orderId, LocalDate date, Order.OrderStatus status, Long salespersonId, Long customerId,
+                          Long productId, Double quantityKg, BigDecimal pricePerKg, int subtotalPaise, boolean first) {
+        beginWrite();
+        int row = pendingSize;
+        int chunkIndex = row >> CHUNK_BITS;
+        if (chunkIndex == pendingChunks.length) {
+            pendingChunks = Arrays.copyOf(pendingChunks, chunkIndex + 1);
+            pendingChunks[chunkIndex] = new Chunk();
+        }
+        // Rows past the published size are invisible to readers, so they are written in place
+        Chunk c = pendingChunks[chunkIndex];
+        int r = row & CHUNK_MASK;
+        c.orderId[r] = orderId;
+        c.day[r] = (int) date.toEpochDay();
+        c.status[r] = (byte) status.ordinal();
+        c.salespersonId[r] = salespersonId != null ? salespersonId.intValue() : 0;
+        c.customerId[r] = customerId.intValue();
+        c.productId[r] = productId.intValue();
+        c.grams[r] = (int) Math.round(quantityKg * 1000);
+        c.pricePaise[r] = (int) toPaise(pricePerKg);
+        c.subtotalPaise[r] = subtotalPaise;
+        c.feePaise[r] = 0;
+        c.flags[r] = first ? FIRST_LINE : 0;
+        if (first) {
+            firstRows.put(orderId, row);
+        }
+        pendingSize++;
+        return row;
+    }
+
+    private void setFee(int row, int feePaise) {
+        writable(row).feePaise[row & CHUNK_MASK] = feePaise;
+    }
+
+    private void beginWrite() {
+        if (pendingChunks == null) {
+            pendingChunks = state.chunks().clone();
+            pendingSize = state.size();
+        }
+    }
+
+    // The pending chunk holding a row about to change; if readers can see the row, its chunk is copied first
+    private Chunk writable(int row) {
+        int chunkIndex = row >> CHUNK_BITS;
+        if (row < state.size() && !copiedChunks.get(chunkIndex)) {
+            pendingChunks[chunkIndex] = pendingChunks[chunkIndex].copyForUpdate();
+            copiedChunks.set(chunkIndex);
+        }
+        return pendingChunks[chunkIndex];
+    }
+
+    // Makes pending rows visible and drops the oldest chunks while over the row bound; returns rows dropped
+    private int publish() {
+        if (pendingChunks == null) {
+            return 0;
+        }
+        Chunk[] chunks = pendingChunks;
+        int size = pendingSize;
+        int dropped = 0;
+        while (size > maxRows && chunks.length > 1) {
+            chunks = Arrays.copyOfRange(chunks, 1, chunks.length);
+            size -= CHUNK_SIZE;
+            dropped += CHUNK_SIZE;
+        }
+        if (dropped > 0) {
+            firstRows.rebuild(chunks, size);
+        }
+        state = new State(chunks, size, state.evictedRows() + dropped);
+        pendingChunks = null;
+        copiedChunks.clear();
+        return dropped;
+    }
+
+    private void refreshCosts() {
+        Map<Long, Integer> costs = new HashMap<>();
+        Map<Long, Long> latestPurchaseId = new HashMap<>();
+        for (Object[] row : purchaseRepository.findLatestCostPerProduct()) {
+            Long productId = (Long) row[0];
+            Long purchaseId = (Long) row[1];
+            if (latestPurchaseId.getOrDefault(productId, Long.MIN_VALUE) < purchaseId) {
+                latestPurchaseId.put(productId, purchaseId);
+                costs.put(productId, (int) toPaise((BigDecimal) row[2]));
+            }
+        }
+        costPaiseByProduct = costs;
+    }
+
+    // ----- scanning -----
+
+    private interface Scan<A> {
+        A create();
+
+        void row(A acc, Chunk chunk, int row);
+
+        A merge(A left, A right);
+    }
+
+    private <A> A scan(State current, Scan<A> scan) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(current.chunks(), scan, 0, current.size()));
+    }
+
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+        private final Chunk[] chunks;
+        private final Scan<A> scan;
+        private final int from;
+        private final int to;
+
+        ScanTask(Chunk[] chunks, Scan<A> scan, int from, int to) {
+            this.chunks = chunks;
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                A acc = scan.create();
+                for (int row = from; row < to; row++) {
+                    scan.row(acc, chunks[row >> CHUNK_BITS], row & CHUNK_MASK);
+                }
+                return acc;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(chunks, scan, from, mid);
+            left.fork();
+            A right = new ScanTask<>(chunks, scan, mid, to).compute();
+            return scan.merge(left.join(), right);
+        }
+    }
+
+    // {revenue paise, completed revenue paise} and grams sold per product
+    private static final class ProfitSums {
+        long revenuePaise;
+        long completedPaise;
+        final Map<Integer, Long> gramsByProduct = new HashMap<>();
+    }
+
+    /** Order ID to row without boxing: open addressing over parallel arrays, at most half full. */
+    private static final class OrderRowIndex {
+        private long[] orderIds = new long[1024];
+        private int[] rows = new int[1024];
+        private int count;
+
+        int get(long orderId) {
+            int mask = orderIds.length - 1;
+            for (int i = slot(orderId, mask); orderIds[i] != 0; i = (i + 1) & mask) {
+                if (orderIds[i] == orderId) {
+                    return rows[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long orderId, int row) {
+            if (2 * (count + 1) > orderIds.length) {
+                resize(orderIds.length * 2);
+            }
+            int mask = orderIds.length - 1;
+            int i = slot(orderId, mask);
+            while (orderIds[i] != 0 && orderIds[i] != orderId) {
+                i = (i + 1) & mask;
+            }
+            if (orderIds[i] == 0) {
+                count++;
+            }
+            orderIds[i] = orderId;
+            rows[i] = row;
+        }
+
+        // Re-indexes from scratch once the oldest chunks are dropped and every row has shifted down
+        void rebuild(Chunk[] chunks, int size) {
+            Arrays.fill(orderIds, 0);
+            count = 0;
+            long previous = 0;
+            for (int row = 0; row < size; row++) {
+                long orderId = chunks[row >> CHUNK_BITS].orderId[row & CHUNK_MASK];
+                if (orderId != previous) {
+                    put(orderId, row);
+                    previous = orderId;
+                }
+            }
+        }
+
+        long heapBytes() {
+            return (long) orderIds.length * (8 + 4);
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = orderIds;
+            int[] oldRows = rows;
+            orderIds = new long[capacity];
+            rows = new int[capacity];
+            count = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    put(oldIds[i], oldRows[i]);
+                }
+            }
+        }
+
+        private static int slot(long orderId, int mask) {
+            return (int) ((orderId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+
+    // Adds truncated/retainedFrom: whether rows this report's range covers have been evicted
+    private static void putCoverage(Map<String, Object> report, State current, int fromDay) {
+        String retainedFrom = retainedFrom(current);
+        report.put("truncated", retainedFrom != null && fromDay <= current.chunks()[0].day[0]);
+        report.put("retainedFrom", retainedFrom);
+    }
+
+    // Day of the oldest row held, or null while nothing has been evicted
+    private static String retainedFrom(State current) {
+        return current.evictedRows() > 0 && current.size() > 0
+                ? LocalDate.ofEpochDay(current.chunks()[0].day[0]).toString() : null;
+    }
+
+    private static long costMilliPaise(Map<Long, Integer> costs, int productId, long grams) {
+        return costs.getOrDefault((long) productId, 0) * grams;
+    }
+
+    private static boolean inRange(Chunk c, int r, int fromDay, int toDay) {
+        return c.day[r] >= fromDay && c.day[r] <= toDay;
+    }
+
+    private static boolean counted(Chunk c, int r, int fromDay, int toDay) {
+        return c.status[r] != CANCELLED && inRange(c, r, fromDay, toDay);
+    }
+
+    private static long[] addInto(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    private static int fromDay(LocalDate from) {
+        return from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+    }
+
+    private static int toDay(LocalDate to) {
+        return to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+    }
+
+    private static List<Long> toLongIds(Set<Integer> ids) {
+        return ids.stream().map(Integer::longValue).toList();
+    }
+
+    private long indexBytes() {
+        writeLock.lock();
+        try {
+            return firstRows.heapBytes();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static long heapBytes(State state) {
+        return (long) state.chunks().length * CHUNK_SIZE * BYTES_PER_ROW;
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromPaise(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    // cost (paise per kg) x grams is in thousandths of a paisa
+    private static BigDecimal fromMilliPaise(long milliPaise) {
+        return BigDecimal.valueOf(milliPaise, 5).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal commission(long revenuePaise) {
+        return BigDecimal.valueOf(revenuePaise * COMMISSION_PERCENT, 4).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vegstore.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Lines a recompute from the orders table up with the accruals made by AFTER_COMMIT
+ * {@link OrderEvent} listeners. A transaction that publishes an order event holds the read side from
+ * just before its commit until its after-commit listeners have run; {@link #exclusive} holds the
+ * write side, so while it runs no order is committed but not yet accrued. Everything accrued before
+ * it is in the recompute, and nothing accrued after it is.
+ */
+@Service
+public class OrderCommitFence {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        // One hold per transaction, however many events it publishes
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        lock.readLock().lock();
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // Runs after every afterCommit callback, so the AFTER_COMMIT listeners have accrued by now
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OrderCommitFence.this);
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Runs {@code recompute} with order commits held back. Its first query must be the recompute, so
+     * the snapshot it reads is taken inside the fence.
+     */
+    public <T> T exclusive(Supplier<T> recompute) {
+        lock.writeLock().lock();
+        try {
+            return recompute.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
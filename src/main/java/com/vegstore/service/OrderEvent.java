@@ -0,0 +1,55 @@
+package com.vegstore.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.vegstore.entity.Order;
+import com.vegstore.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published by {@link OrderService} whenever an order is created, claimed or changes status.
+ * Carries plain values only so listeners never touch lazy associations after the transaction.
+ */
+public record OrderEvent(Type type,
+                         Long orderId,
+                         Order.OrderStatus status,
+                         Order.OrderStatus previousStatus,
+                         Long customerId,
+                         String customerName,
+                         Long salespersonId,
+                         String salespersonName,
+                         BigDecimal totalAmount,
+                         LocalDateTime orderCreatedAt,
+                         @JsonIgnore List<Line> lines) {
+
+    public enum Type { CREATED, CLAIMED, STATUS_CHANGED }
+
+    /** An order line; only filled in on CREATED events. */
+    public record Line(Long productId, Double quantityKg, BigDecimal pricePerKg, BigDecimal subtotal) {
+    }
+
+    public static OrderEvent of(Type type, Order order, Order.OrderStatus previousStatus) {
+        User customer = order.getCustomer();
+        User salesperson = order.getSalesperson();
+        return new OrderEvent(type,
+                order.getId(),
+                order.getStatus(),
+                previousStatus,
+                customer.getId(),
+                customer.getFullName(),
+                salesperson != null ? salesperson.getId() : null,
+                salesperson != null ? salesperson.getFullName() : null,
+                order.getTotalAmount(),
+                order.getCreatedAt(),
+                type == Type.CREATED ? lines(order) : List.of());
+    }
+
+    private static List<Line> lines(Order order) {
+        return order.getOrderItems().stream()
+                .map(item -> new Line(item.getProduct().getId(), item.getQuantityKg(),
+                        item.getPricePerKgAtTimeOfOrder(), item.getSubtotal()))
+                .toList();
+    }
+}
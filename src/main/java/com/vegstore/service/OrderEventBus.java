@@ -0,0 +1,219 @@
+package com.vegstore.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process fan-out of committed {@link OrderEvent}s to the sales dashboard over server-sent events.
+ * Idle subscribers hold no thread (the servlet request is async); a virtual thread is started per
+ * subscriber only while it has frames to write. Recent events are kept in a ring buffer so a client
+ * reconnecting with Last-Event-ID gets what it missed.
+ */
+@Service
+@Slf4j
+public class OrderEventBus {
+
+    // Event IDs are "<boot>-<sequence>"; an ID from a previous run can't be resumed and forces a resync
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Frame[] ring;
+    private long sequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final long timeoutMillis;
+    private final int maxPending;
+
+    public OrderEventBus(@Value("${vegstore.sales.stream.buffer-size:1000}") int bufferSize,
+                         @Value("${vegstore.sales.stream.timeout-minutes:30}") long timeoutMinutes,
+                         @Value("${vegstore.sales.stream.max-pending:500}") int maxPending) {
+        this.ring = new Frame[bufferSize];
+        this.timeoutMillis = Duration.ofMinutes(timeoutMinutes).toMillis();
+        this.maxPending = maxPending;
+    }
+
+    // Only committed changes reach the dashboard; a rolled-back order never shows up
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        lock.lock();
+        try {
+            sequence++;
+            Frame frame = new Frame(eventId(sequence), "order", event);
+            ring[(int) (sequence % ring.length)] = frame;
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a stream. When {@code lastEventId} is given, buffered events after it are replayed first;
+     * if it is too old or from another run the client is told to resync (reload) instead.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Replay and registration happen under the publish lock, so no event falls between the two
+        lock.lock();
+        try {
+            replay(subscriber, lastEventId);
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Sales stream subscribed (resume from {}), {} subscribers", lastEventId, subscribers.size());
+        return emitter;
+    }
+
+    // The position a freshly rendered page is current up to; passed back on its first connect
+    public String currentEventId() {
+        lock.lock();
+        try {
+            return eventId(sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Keeps idle connections from being closed by proxies and detects clients that went away
+    @Scheduled(fixedRateString = "${vegstore.sales.stream.heartbeat-seconds:20}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(Frame.HEARTBEAT);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(Subscriber::close);
+        senders.shutdown();
+    }
+
+    private void replay(Subscriber subscriber, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return;
+        }
+        long from = parseSequence(lastEventId);
+        long oldest = Math.max(1, sequence - ring.length + 1);
+        if (from < 0 || from > sequence || from + 1 < oldest) {
+            subscriber.enqueue(new Frame(eventId(sequence), "resync", "reload"));
+            return;
+        }
+        for (long seq = from + 1; seq <= sequence; seq++) {
+            subscriber.enqueue(ring[(int) (seq % ring.length)]);
+        }
+    }
+
+    private String eventId(long seq) {
+        return bootId + "-" + seq;
+    }
+
+    private long parseSequence(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash < 0 || !eventId.substring(0, dash).equals(bootId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Frame(String id, String name, Object data) {
+        static final Frame HEARTBEAT = new Frame(null, null, null);
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (name == null) {
+                return SseEmitter.event().comment("keep-alive");
+            }
+            return SseEmitter.event().id(id).name(name).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Frame> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Frame frame) {
+            if (closed) {
+                return;
+            }
+            // A client this far behind is dropped; it reconnects and resumes from its last event ID
+            if (pendingCount.incrementAndGet() > maxPending) {
+                log.debug("Dropping slow sales stream subscriber");
+                close();
+                return;
+            }
+            pending.add(frame);
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        // Single writer per subscriber: at most one drain runs at a time
+        private void drain() {
+            do {
+                Frame frame;
+                while ((frame = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    try {
+                        emitter.send(frame.toEvent());
+                    } catch (IOException | IllegalStateException e) {
+                        close();
+                        return;
+                    }
+                }
+                draining.set(false);
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            pending.clear();
+            try {
+                emitter.complete();
+            } catch (IllegalStateException ignored) {
+                // already completed
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.entity.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order intake for checkout. In "sync" mode orders are created on the request thread as before;
+ * in "async" mode placement is queued and virtual-thread workers commit orders in small groups.
+ * Either way the cart is taken (emptied) when the customer submits and the order is built from
+ * those lines, so later cart edits or a second checkout can't change or repeat it. Lines of an
+ * order that fails go back into the cart.
+ *
+ * <p>The async queue is in memory only. A queued order is not durable until its worker commits it;
+ * the emptied cart is written in that same transaction, so if the process dies first the order is
+ * lost but the customer's saved cart still holds its lines.
+ */
+@Service
+@Slf4j
+public class OrderIntakeService {
+
+    public enum Mode { SYNC, ASYNC }
+
+    public enum State { QUEUED, PLACED, FAILED }
+
+    public record Intake(String reference, Long userId, State state, Long orderId,
+                         BigDecimal totalAmount, String message, long updatedAt) {
+    }
+
+    private record Request(String reference, User customer, CartCache.CartView cart, String customerName,
+                           String customerPhone, String deliveryAddress, String city, String pincode,
+                           String deliveryNotes, String paymentMethod) {
+    }
+
+    private final OrderService orderService;
+    private final CartService cartService;
+    private final TransactionTemplate transactionTemplate;
+    private final Mode mode;
+    private final BlockingQueue<Request> queue;
+    private final int workers;
+    private final int groupSize;
+    private final long offerTimeoutMillis;
+    private final long statusTtlMillis = Duration.ofHours(1).toMillis();
+
+    private final Map<String, Intake> intakes = new ConcurrentHashMap<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+    private volatile long lastPrune;
+
+    public OrderIntakeService(OrderService orderService,
+                              CartService cartService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${vegstore.checkout.intake-mode:sync}") String mode,
+                              @Value("${vegstore.checkout.intake.queue-capacity:1000}") int queueCapacity,
+                              @Value("${vegstore.checkout.intake.workers:4}") int workers,
+                              @Value("${vegstore.checkout.intake.group-size:16}") int groupSize,
+                              @Value("${vegstore.checkout.intake.offer-timeout-ms:500}") long offerTimeoutMillis) {
+        this.orderService = orderService;
+        this.cartService = cartService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = workers;
+        this.groupSize = groupSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        if (mode != Mode.ASYNC) {
+            log.info("Order intake running in SYNC mode");
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofVirtual().name("order-intake-" + i).start(this::workerLoop));
+        }
+        log.info("Order intake running in ASYNC mode: {} workers, group size {}, queue capacity {}",
+                workers, groupSize, queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workerThreads) {
+            worker.join(Duration.ofSeconds(30));
+        }
+        // Anything still queued was already acknowledged to a customer, so commit it before exiting
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("Committing {} queued orders on shutdown", remaining.size());
+            commitGroup(remaining);
+        }
+    }
+
+    public boolean isAsync() {
+        return mode == Mode.ASYNC;
+    }
+
+    public Order placeNow(User customer, String customerName, String customerPhone, String deliveryAddress,
+                          String city, String pincode, String deliveryNotes, String paymentMethod) {
+        CartCache.CartView cart = cartService.takeForCheckout(customer);
+        try {
+            return orderService.createOrder(customer, quantities(cart), customerName, customerPhone,
+                    deliveryAddress, city, pincode, deliveryNotes, paymentMethod);
+        } catch (RuntimeException e) {
+            cartService.restore(customer, cart);
+            throw e;
+        }
+    }
+
+    // Accepts the order into the queue and returns its pending reference. Blocks briefly when the
+    // queue is full and then rejects, so a backlog pushes back on checkout instead of growing.
+    public Intake submit(User customer, String customerName, String customerPhone, String deliveryAddress,
+                         String city, String pincode, String deliveryNotes, String paymentMethod) {
+        String reference = UUID.randomUUID().toString();
+        CartCache.CartView cart = cartService.takeForQueue(customer);
+        if (cart.lines().isEmpty()) {
+            throw new RuntimeException("Cart is empty");
+        }
+        Request request = new Request(reference, customer, cart, customerName, customerPhone, deliveryAddress,
+                city, pincode, deliveryNotes, paymentMethod);
+
+        pruneFinished();
+        Intake queued = new Intake(reference, customer.getId(), State.QUEUED, null, null, null, System.currentTimeMillis());
+        intakes.put(reference, queued);
+
+        try {
+            if (!queue.offer(request, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                intakes.remove(reference);
+                cartService.restoreQueued(customer, cart);
+                throw new RuntimeException("Checkout is busy right now, please try again in a moment");
+            }
+        } catch (InterruptedException e) {
+            intakes.remove(reference);
+            cartService.restoreQueued(customer, cart);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Order submission was interrupted", e);
+        }
+
+        log.info("Order intake {} queued for customer {}", reference, customer.getUsername());
+        return queued;
+    }
+
+    public Optional<Intake> getIntake(String reference, Long userId) {
+        return Optional.ofNullable(intakes.get(reference))
+                .filter(intake -> intake.userId().equals(userId));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void workerLoop() {
+        List<Request> group = new ArrayList<>(groupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, groupSize - 1);
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Order intake worker error: {}", e.getMessage(), e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    // Group commit: all orders of the group share one transaction, so their inserts flush as JDBC
+    // batches and commit once. If any order fails, the group is rolled back and retried one by one
+    // so a single bad basket only fails itself.
+    private void commitGroup(List<Request> group) {
+        if (group.size() > 1) {
+            try {
+                List<Order> orders = transactionTemplate.execute(status -> {
+                    List<Order> placed = new ArrayList<>(group.size());
+                    for (Request request : group) {
+                        placed.add(create(request));
+                    }
+                    return placed;
+                });
+                for (int i = 0; i < group.size(); i++) {
+                    markPlaced(group.get(i), orders.get(i));
+                }
+                log.info("Group-committed {} orders", group.size());
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Group of {} orders rolled back ({}), committing individually", group.size(), e.getMessage());
+            }
+        }
+
+        for (Request request : group) {
+            try {
+                Order order = transactionTemplate.execute(status -> create(request));
+                markPlaced(request, order);
+            } catch (RuntimeException e) {
+                log.error("Order intake {} failed: {}", request.reference(), e.getMessage());
+                cartService.restoreQueued(request.customer(), request.cart());
+                intakes.put(request.reference(), new Intake(request.reference(), request.customer().getId(),
+                        State.FAILED, null, null, e.getMessage(), System.currentTimeMillis()));
+            }
+        }
+    }
+
+    // Runs inside the worker's transaction, so the order and the emptied cart commit together
+    private Order create(Request request) {
+        Order order = orderService.createOrder(request.customer(), quantities(request.cart()), request.customerName(),
+                request.customerPhone(), request.deliveryAddress(), request.city(), request.pincode(),
+                request.deliveryNotes(), request.paymentMethod());
+        cartService.saveQueued(request.customer());
+        return order;
+    }
+
+    private static Map<Long, Double> quantities(CartCache.CartView cart) {
+        Map<Long, Double> quantities = new LinkedHashMap<>();
+        for (CartCache.Line line : cart.lines()) {
+            quantities.merge(line.product().id(), line.quantity(), Double::sum);
+        }
+        return quantities;
+    }
+
+    private void markPlaced(Request request, Order order) {
+        intakes.put(request.reference(), new Intake(request.reference(), request.customer().getId(),
+                State.PLACED, order.getId(), order.getTotalAmount(), null, System.currentTimeMillis()));
+    }
+
+    // Finished intakes stay visible for an hour; sweep them at most once a minute
+    private void pruneFinished() {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < 60_000) {
+            return;
+        }
+        lastPrune = now;
+        long cutoff = now - statusTtlMillis;
+        intakes.values().removeIf(intake -> intake.state() != State.QUEUED && intake.updatedAt() < cutoff);
+    }
+}
@@ -3,20 +3,20 @@ package com.vegstore.service;
 import com.vegstore.entity.*;
 import com.vegstore.repository.OrderRepository;
 import com.vegstore.repository.ProductRepository;
-import com.vegstore.repository.PurchaseRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-// Add these Jackson imports
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
-
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -26,32 +26,36 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;  // ADDED
     private final ProductService productService;
-    private final PurchaseRepository purchaseRepository;
-    private final CartService cartService;  // ADDED
-    private final ObjectMapper objectMapper;  // ADDED
+    private final ApplicationEventPublisher eventPublisher;
 
+    /**
+     * Places an order for {@code quantities} (product ID to kg), the cart lines the customer checked
+     * out; prices always come from the products, never from the cart.
+     */
     @Transactional
-    public Order createOrder(User customer, String customerName, String customerPhone,
+    public Order createOrder(User customer, Map<Long, Double> quantities, String customerName, String customerPhone,
                              String deliveryAddress, String city, String pincode,
-                             String deliveryNotes, String paymentMethod, String cartDataJson) {
+                             String deliveryNotes, String paymentMethod) {
 
         try {
             log.info("=== OrderService.createOrder START ===");
             log.info("Customer: {} (ID: {})", customer.getUsername(), customer.getId());
-            log.info("Cart JSON: {}", cartDataJson);
-
-            // Parse cart data
-            List<Map<String, Object>> cartItems = objectMapper.readValue(
-                    cartDataJson,
-                    new TypeReference<List<Map<String, Object>>>() {}
-            );
 
-            log.info("Parsed {} cart items", cartItems.size());
-
-            if (cartItems.isEmpty()) {
+            if (quantities.isEmpty()) {
                 throw new RuntimeException("Cart is empty");
             }
 
+            // Every product of the basket in one query
+            Map<Long, Product> products = new HashMap<>();
+            for (Product product : productRepository.findAllById(quantities.keySet())) {
+                products.put(product.getId(), product);
+            }
+            if (products.size() != quantities.size()) {
+                throw new RuntimeException("A product in the cart is no longer available");
+            }
+
+            log.info("Loaded {} products for {} cart lines", products.size(), quantities.size());
+
             // Create order
             Order order = Order.builder()
                     .customer(customer)
@@ -69,20 +73,19 @@ public class OrderService {
 
             BigDecimal totalAmount = BigDecimal.ZERO;
 
-            // Create order items
-            for (Map<String, Object> cartItem : cartItems) {
-                Long productId = ((Number) cartItem.get("productId")).longValue();
-                Double quantity = ((Number) cartItem.get("quantity")).doubleValue();
-                Double price = ((Number) cartItem.get("price")).doubleValue();
+            // The TreeMap keeps lines in product-ID order
+            Map<Long, Double> quantityByProduct = new TreeMap<>(quantities);
 
-                log.info("Processing item: Product ID={}, Quantity={}, Price={}", productId, quantity, price);
+            // Create order items, pricing each line from the product rather than from anything the client sent
+            for (Map.Entry<Long, Double> entry : quantityByProduct.entrySet()) {
+                Product product = products.get(entry.getKey());
+                Double quantity = entry.getValue();
 
-                Product product = productRepository.findById(productId)
-                        .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
-
-                BigDecimal pricePerKg = BigDecimal.valueOf(price);
+                BigDecimal pricePerKg = product.getPriceForCustomer(Boolean.TRUE.equals(customer.getIsWholesale()), quantity);
                 BigDecimal subtotal = pricePerKg.multiply(BigDecimal.valueOf(quantity));
 
+                log.info("Processing item: Product ID={}, Quantity={}, Price={}", product.getId(), quantity, pricePerKg);
+
                 OrderItem orderItem = OrderItem.builder()
                         .product(product)
                         .quantityKg(quantity)
@@ -92,12 +95,17 @@ public class OrderService {
 
                 order.addOrderItem(orderItem);
                 totalAmount = totalAmount.add(subtotal);
+            }
 
-                // Update product stock
-                double newStock = product.getStockKg() - quantity;
-                log.info("Updating product stock: {} -> {}", product.getStockKg(), newStock);
-                product.setStockKg(newStock);
-                productRepository.save(product);
+            // Reserve stock in ascending product-ID order so that two baskets sharing
+            // vegetables always lock the rows in the same sequence and cannot deadlock.
+            // A miss rolls back the whole order.
+            for (Map.Entry<Long, Double> entry : quantityByProduct.entrySet()) {
+                int reserved = productRepository.decrementStockIfAvailable(entry.getKey(), entry.getValue());
+                if (reserved == 0) {
+                    throw new RuntimeException("Insufficient stock for product: " + products.get(entry.getKey()).getName());
+                }
+                log.info("Reserved {} kg of product {}", entry.getValue(), entry.getKey());
             }
 
             // Add delivery fee if needed
@@ -112,11 +120,7 @@ public class OrderService {
             log.info("Saving order to database...");
             Order savedOrder = orderRepository.save(order);
             log.info("Order saved with ID: {}", savedOrder.getId());
-
-            // Clear customer's cart
-            log.info("Clearing cart for customer: {}", customer.getUsername());
-            cartService.clearCart(customer);
-            log.info("Cart cleared successfully");
+            eventPublisher.publishEvent(OrderEvent.of(OrderEvent.Type.CREATED, savedOrder, null));
 
             log.info("=== OrderService.createOrder SUCCESS ===");
             return savedOrder;
@@ -147,41 +151,64 @@ public class OrderService {
 
     @Transactional
     public Order claimOrder(Long orderId, User salesperson) {
-        Order order = getOrderById(orderId);
-
-        if (order.getStatus() != Order.OrderStatus.PENDING) {
+        // One conditional UPDATE: of two salespeople racing for the same order exactly one gets a row back
+        int claimed = orderRepository.claimIfStatus(orderId, salesperson,
+                Order.OrderStatus.PENDING, Order.OrderStatus.PROCESSING, LocalDateTime.now());
+        if (claimed == 0) {
             throw new RuntimeException("Order is not available for claiming");
         }
 
+        log.info("Order {} claimed by salesperson: {}", orderId, salesperson.getUsername());
+        Order order = getOrderById(orderId);
+        eventPublisher.publishEvent(OrderEvent.of(OrderEvent.Type.CLAIMED, order, Order.OrderStatus.PENDING));
+        return order;
+    }
+
+    @Transactional
+    public Order claimNextOrder(User salesperson) {
+        // SKIP LOCKED hands concurrent salespeople different pending orders instead of queueing them on one row
+        Order order = orderRepository.findNextForClaim(Order.OrderStatus.PENDING, PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("No pending orders available"));
+
         order.setSalesperson(salesperson);
         order.setStatus(Order.OrderStatus.PROCESSING);
+        order.setClaimedAt(LocalDateTime.now());
 
-        log.info("Order {} claimed by salesperson: {}", orderId, salesperson.getUsername());
-        return orderRepository.save(order);
+        log.info("Order {} claimed (next available) by salesperson: {}", order.getId(), salesperson.getUsername());
+        Order saved = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderEvent.of(OrderEvent.Type.CLAIMED, saved, Order.OrderStatus.PENDING));
+        return saved;
     }
 
     @Transactional
     public Order updateOrderStatus(Long orderId, Order.OrderStatus status) {
         Order order = getOrderById(orderId);
+        Order.OrderStatus previousStatus = order.getStatus();
         order.setStatus(status);
 
+        if (status == Order.OrderStatus.COMPLETED && previousStatus != Order.OrderStatus.COMPLETED) {
+            LocalDateTime now = LocalDateTime.now();
+            order.setCompletedAt(now);
+            if (order.getClaimedAt() != null) {
+                order.setHandlingSeconds(Duration.between(order.getClaimedAt(), now).getSeconds());
+            }
+        } else if (status != Order.OrderStatus.COMPLETED) {
+            order.setCompletedAt(null);
+            order.setHandlingSeconds(null);
+        }
+
         log.info("Order {} status updated to: {}", orderId, status);
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        if (previousStatus != status) {
+            eventPublisher.publishEvent(OrderEvent.of(OrderEvent.Type.STATUS_CHANGED, saved, previousStatus));
+        }
+        return saved;
     }
 
     public List<Order> getOrdersForLastNDays(int days) {
         LocalDateTime startDate = LocalDateTime.now().minusDays(days);
         return orderRepository.findOrdersAfterDate(startDate);
     }
-
-    public BigDecimal calculateOrderItemProfit(OrderItem orderItem) {
-        BigDecimal purchaseCost = purchaseRepository.findLatestPurchaseForProduct(orderItem.getProduct())
-                .map(Purchase::getCostPerKg)
-                .orElse(BigDecimal.ZERO);
-
-        BigDecimal salePrice = orderItem.getPricePerKgAtTimeOfOrder();
-        BigDecimal profitPerKg = salePrice.subtract(purchaseCost);
-
-        return profitPerKg.multiply(BigDecimal.valueOf(orderItem.getQuantityKg()));
-    }
 }
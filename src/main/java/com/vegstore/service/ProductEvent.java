@@ -0,0 +1,9 @@
+package com.vegstore.service;
+
+/**
+ * Published by {@link ProductService} when a product is created, edited, deleted or its stock moves.
+ */
+public record ProductEvent(Type type, Long productId) {
+
+    public enum Type { CREATED, UPDATED, DELETED, STOCK_CHANGED }
+}
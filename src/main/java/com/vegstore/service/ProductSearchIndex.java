@@ -0,0 +1,470 @@
+package com.vegstore.service;
+
+import java.util.*;
+
+/**
+ * Immutable inverted index over product name, category and description. Each distinct word maps to
+ * the products using it, per field; the vocabulary itself is indexed by trigram, plus each word's
+ * first one and two letters, so a query term is resolved against the (small) vocabulary first and
+ * only then fanned out to products. Products are numbered by dense ordinals so postings are sorted
+ * {@code int[]}s and hits are scored in flat arrays. A term that matches nothing, even through its
+ * synonyms, falls back to vocabulary words a typo away, found in a {@link FuzzyVocabulary}. Changes
+ * produce a new index that shares every posting list they don't touch; {@link CatalogService} keeps
+ * one in each catalog snapshot.
+ */
+public final class ProductSearchIndex {
+
+    /** Indexed fields, strongest first, and how much a match in each counts towards the rank. */
+    public enum Field {
+        NAME(3), CATEGORY(2), DESCRIPTION(1);
+
+        final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int GRAM = 3;
+    private static final int MAX_TERMS = 8;
+    // Rank classes: matched terms (up to MAX_TERMS) by summed weight (up to MAX_TERMS * 3)
+    private static final int SCORE_SLOTS = 32;
+    private static final int[] NONE = new int[0];
+    private static final String[] NO_WORDS = new String[0];
+    private static final Field[] FIELDS = Field.values();
+
+    public static final ProductSearchIndex EMPTY = new ProductSearchIndex(new long[0], Map.of(), Map.of(), Map.of(),
+            FuzzyVocabulary.EMPTY);
+
+    // Ordinal -> product ID, 0 once removed
+    private final long[] ids;
+    private final Map<Long, Integer> ordinals;
+    // Word -> ascending ordinals per field (NONE where the word isn't used)
+    private final Map<String, int[][]> postings;
+    // Gram -> sorted vocabulary words containing it
+    private final Map<String, String[]> vocabulary;
+    private final FuzzyVocabulary fuzzy;
+
+    private ProductSearchIndex(long[] ids, Map<Long, Integer> ordinals, Map<String, int[][]> postings,
+                               Map<String, String[]> vocabulary, FuzzyVocabulary fuzzy) {
+        this.ids = ids;
+        this.ordinals = ordinals;
+        this.postings = postings;
+        this.vocabulary = vocabulary;
+        this.fuzzy = fuzzy;
+    }
+
+    public static ProductSearchIndex build(Collection<CatalogProduct> products) {
+        List<CatalogProduct> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing(CatalogProduct::getId));
+
+        int n = sorted.size();
+        long[] ids = new long[n];
+        Map<Long, Integer> ordinals = new HashMap<>();
+        Map<String, Postings[]> building = new HashMap<>();
+        // Ordinals are assigned in order, so every posting list is built already sorted
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            CatalogProduct product = sorted.get(ordinal);
+            ids[ordinal] = product.getId();
+            ordinals.put(product.getId(), ordinal);
+            String[] text = textOf(product);
+            for (Field field : FIELDS) {
+                for (String word : words(text[field.ordinal()])) {
+                    building.computeIfAbsent(word, w -> new Postings[FIELDS.length]);
+                    Postings[] byField = building.get(word);
+                    if (byField[field.ordinal()] == null) {
+                        byField[field.ordinal()] = new Postings();
+                    }
+                    byField[field.ordinal()].add(ordinal);
+                }
+            }
+        }
+
+        Map<String, int[][]> postings = new HashMap<>();
+        Map<String, List<String>> wordsByGram = new HashMap<>();
+        building.forEach((word, byField) -> {
+            int[][] lists = new int[FIELDS.length][];
+            for (int f = 0; f < lists.length; f++) {
+                lists[f] = byField[f] == null ? NONE : byField[f].toArray();
+            }
+            postings.put(word, lists);
+            for (String gram : grams(word)) {
+                wordsByGram.computeIfAbsent(gram, g -> new ArrayList<>()).add(word);
+            }
+        });
+        Map<String, String[]> vocabulary = new HashMap<>();
+        wordsByGram.forEach((gram, words) -> {
+            String[] array = words.toArray(NO_WORDS);
+            Arrays.sort(array);
+            vocabulary.put(gram, array);
+        });
+        FuzzyVocabulary fuzzy = FuzzyVocabulary.EMPTY.with(postings.keySet());
+        return new ProductSearchIndex(ids, ordinals, postings, vocabulary, fuzzy);
+    }
+
+    /** Whether a change from {@code before} to {@code after} needs the index updated. */
+    public static boolean textChanged(CatalogProduct before, CatalogProduct after) {
+        return !Arrays.equals(textOf(before), textOf(after));
+    }
+
+    /**
+     * A new index with {@code removed} taken out and {@code added} put in; an edited product appears
+     * in both, old version in {@code removed}, and keeps its ordinal. New products are appended, and
+     * removed ones leave an empty slot until the next full build. Only posting lists of affected
+     * words are copied.
+     */
+    public ProductSearchIndex withChanges(Collection<CatalogProduct> removed, Collection<CatalogProduct> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return this;
+        }
+        Map<Long, Integer> newOrdinals = new HashMap<>(ordinals);
+        // Word -> per-field ordinals to drop / to add
+        Map<String, List<Set<Integer>>> minus = new HashMap<>();
+        Map<String, List<Set<Integer>>> plus = new HashMap<>();
+        List<Integer> vacated = new ArrayList<>();
+        for (CatalogProduct product : removed) {
+            Integer ordinal = newOrdinals.remove(product.getId());
+            if (ordinal != null) {
+                vacated.add(ordinal);
+                collect(minus, product, ordinal);
+            }
+        }
+        int size = ids.length;
+        Map<Integer, Long> occupied = new HashMap<>();
+        for (CatalogProduct product : added) {
+            Integer ordinal = ordinals.get(product.getId());
+            if (ordinal == null) {
+                ordinal = size++;
+            }
+            newOrdinals.put(product.getId(), ordinal);
+            occupied.put(ordinal, product.getId());
+            collect(plus, product, ordinal);
+        }
+
+        long[] newIds = Arrays.copyOf(ids, size);
+        vacated.forEach(ordinal -> newIds[ordinal] = 0);
+        occupied.forEach((ordinal, id) -> newIds[ordinal] = id);
+
+        Map<String, int[][]> newPostings = new HashMap<>(postings);
+        Set<String> appeared = new HashSet<>();
+        Set<String> vanished = new HashSet<>();
+        Set<String> touched = new HashSet<>(minus.keySet());
+        touched.addAll(plus.keySet());
+        for (String word : touched) {
+            int[][] current = postings.get(word);
+            int[][] lists = current != null ? current.clone() : new int[][]{NONE, NONE, NONE};
+            boolean used = false;
+            for (int f = 0; f < lists.length; f++) {
+                Set<Integer> drop = minus.containsKey(word) ? minus.get(word).get(f) : Set.of();
+                Set<Integer> put = plus.containsKey(word) ? plus.get(word).get(f) : Set.of();
+                if (!drop.isEmpty() || !put.isEmpty()) {
+                    lists[f] = merge(lists[f], drop, put);
+                }
+                used |= lists[f].length > 0;
+            }
+            if (used) {
+                newPostings.put(word, lists);
+                if (current == null) {
+                    appeared.add(word);
+                }
+            } else if (current != null) {
+                newPostings.remove(word);
+                vanished.add(word);
+            }
+        }
+
+        Map<String, String[]> newVocabulary = vocabulary;
+        if (!appeared.isEmpty() || !vanished.isEmpty()) {
+            newVocabulary = new HashMap<>(vocabulary);
+            Map<String, Set<String>> changedGrams = new HashMap<>();
+            for (String word : appeared) {
+                for (String gram : grams(word)) {
+                    changedGrams.computeIfAbsent(gram, g -> new TreeSet<>(Arrays.asList(vocabulary.getOrDefault(g, NO_WORDS))))
+                            .add(word);
+                }
+            }
+            for (String word : vanished) {
+                for (String gram : grams(word)) {
+                    changedGrams.computeIfAbsent(gram, g -> new TreeSet<>(Arrays.asList(vocabulary.getOrDefault(g, NO_WORDS))))
+                            .remove(word);
+                }
+            }
+            for (Map.Entry<String, Set<String>> entry : changedGrams.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    newVocabulary.remove(entry.getKey());
+                } else {
+                    newVocabulary.put(entry.getKey(), entry.getValue().toArray(NO_WORDS));
+                }
+            }
+        }
+        return new ProductSearchIndex(newIds, newOrdinals, newPostings, newVocabulary, fuzzy.with(appeared));
+    }
+
+    public List<Long> search(String query, int limit) {
+        return search(query, limit, Map.of());
+    }
+
+    /**
+     * Up to {@code limit} product IDs matching any query term, best first: more matched terms, then
+     * higher summed field weights, then catalog order. Terms of three or more characters match
+     * anywhere inside a word; shorter terms match the start of a word. A term also matches through
+     * its {@code synonyms}, and when neither it nor they match anything, through vocabulary words
+     * within a typo of it.
+     */
+    public List<Long> search(String query, int limit, Map<String, List<String>> synonyms) {
+        List<String> terms = words(query).stream().distinct().limit(MAX_TERMS).toList();
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int n = ids.length;
+        byte[] matched = new byte[n];
+        byte[] score = new byte[n];
+        byte[] lastTerm = new byte[n];
+        int[] classCounts = new int[(MAX_TERMS + 1) * SCORE_SLOTS];
+        int hits = 0;
+
+        for (int t = 0; t < terms.size(); t++) {
+            Collection<String> words = matchingWords(terms.get(t), synonyms);
+            if (words.isEmpty()) {
+                continue;
+            }
+            byte mark = (byte) (t + 1);
+            // Fields go strongest first, so a term only counts its best field
+            for (Field field : FIELDS) {
+                for (String word : words) {
+                    for (int ordinal : postings.get(word)[field.ordinal()]) {
+                        if (lastTerm[ordinal] == mark) {
+                            continue;
+                        }
+                        lastTerm[ordinal] = mark;
+                        if (matched[ordinal] == 0) {
+                            hits++;
+                        } else {
+                            classCounts[rankClass(matched[ordinal], score[ordinal])]--;
+                        }
+                        matched[ordinal]++;
+                        score[ordinal] += (byte) field.weight;
+                        classCounts[rankClass(matched[ordinal], score[ordinal])]++;
+                    }
+                }
+            }
+        }
+        if (hits == 0) {
+            return List.of();
+        }
+
+        // Lowest rank class that still makes the cut, and how many of it fit
+        int wanted = Math.min(limit, hits);
+        int threshold = classCounts.length - 1;
+        int above = 0;
+        while (above + classCounts[threshold] < wanted) {
+            above += classCounts[threshold];
+            threshold--;
+        }
+        int fromThreshold = wanted - above;
+
+        // One pass in ordinal order yields each class already in catalog order
+        List<int[]> picked = new ArrayList<>(wanted);
+        for (int ordinal = 0; ordinal < n && picked.size() < wanted; ordinal++) {
+            if (matched[ordinal] == 0) {
+                continue;
+            }
+            int rankClass = rankClass(matched[ordinal], score[ordinal]);
+            if (rankClass > threshold || (rankClass == threshold && fromThreshold-- > 0)) {
+                picked.add(new int[]{rankClass, ordinal});
+            }
+        }
+        picked.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(a[1], b[1]));
+
+        List<Long> result = new ArrayList<>(picked.size());
+        for (int[] pick : picked) {
+            result.add(ids[pick[1]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+
+    /** Vocabulary, gram and posting counts and an estimate of the heap the index holds. */
+    public Map<String, Object> footprint() {
+        long postingEntries = 0;
+        long postingBytes = 0;
+        for (Map.Entry<String, int[][]> entry : postings.entrySet()) {
+            // HashMap node, key string, the per-field array and its lists
+            postingBytes += 32 + stringBytes(entry.getKey()) + 16 + 4L * FIELDS.length;
+            for (int[] list : entry.getValue()) {
+                postingEntries += list.length;
+                postingBytes += list == NONE ? 0 : 16 + 4L * list.length;
+            }
+        }
+        long vocabularyEntries = 0;
+        long vocabularyBytes = 0;
+        for (Map.Entry<String, String[]> entry : vocabulary.entrySet()) {
+            vocabularyEntries += entry.getValue().length;
+            // Words themselves are shared with the posting keys
+            vocabularyBytes += 32 + stringBytes(entry.getKey()) + 16 + 4L * entry.getValue().length;
+        }
+        long productBytes = 16 + 8L * ids.length + 64L * ordinals.size();
+
+        Map<String, Object> footprint = new LinkedHashMap<>();
+        footprint.put("products", ordinals.size());
+        footprint.put("slots", ids.length);
+        footprint.put("words", postings.size());
+        footprint.put("grams", vocabulary.size());
+        footprint.put("fuzzyKeys", fuzzy.keys());
+        footprint.put("postings", postingEntries);
+        footprint.put("postingBytes", postingBytes);
+        footprint.put("gramEntries", vocabularyEntries);
+        footprint.put("vocabularyBytes", vocabularyBytes);
+        footprint.put("productBytes", productBytes);
+        footprint.put("totalBytes", postingBytes + vocabularyBytes + productBytes);
+        return footprint;
+    }
+
+    // The term's own words and its synonyms' words; failing both, live words a typo away
+    private Collection<String> matchingWords(String term, Map<String, List<String>> synonyms) {
+        String[] exact = wordsContaining(term);
+        List<String> alternatives = synonyms.getOrDefault(term, List.of());
+        if (alternatives.isEmpty() && exact.length > 0) {
+            return Arrays.asList(exact);
+        }
+        Set<String> words = new LinkedHashSet<>(Arrays.asList(exact));
+        for (String alternative : alternatives) {
+            words.addAll(Arrays.asList(wordsContaining(alternative)));
+        }
+        if (words.isEmpty()) {
+            for (String word : fuzzy.near(term)) {
+                if (postings.containsKey(word)) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    // Vocabulary words the term matches: a word start for short terms, a substring otherwise
+    private String[] wordsContaining(String term) {
+        if (term.length() < GRAM) {
+            return vocabulary.getOrDefault(prefixGram(term), NO_WORDS);
+        }
+        List<String> termGrams = trigrams(term);
+        List<String[]> lists = new ArrayList<>(termGrams.size());
+        for (String gram : termGrams) {
+            String[] list = vocabulary.get(gram);
+            if (list == null) {
+                return NO_WORDS;
+            }
+            lists.add(list);
+        }
+        if (lists.size() == 1) {
+            // A single trigram is the whole term; nothing to confirm
+            return lists.get(0);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        // Shared trigrams don't guarantee the term itself occurs; the shortest list is small enough to check
+        return Arrays.stream(lists.get(0)).filter(word -> word.contains(term)).toArray(String[]::new);
+    }
+
+    private static void collect(Map<String, List<Set<Integer>>> changes, CatalogProduct product, int ordinal) {
+        String[] text = textOf(product);
+        for (Field field : FIELDS) {
+            for (String word : words(text[field.ordinal()])) {
+                changes.computeIfAbsent(word, w -> List.of(new HashSet<>(), new HashSet<>(), new HashSet<>()))
+                        .get(field.ordinal()).add(ordinal);
+            }
+        }
+    }
+
+    private static int rankClass(int matched, int score) {
+        return matched * SCORE_SLOTS + score;
+    }
+
+    private static String[] textOf(CatalogProduct product) {
+        return new String[]{normalize(product.getName()), normalize(product.getCategory()), normalize(product.getDescription())};
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : normalize(text).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static Set<String> grams(String word) {
+        Set<String> grams = new HashSet<>();
+        grams.add(prefixGram(word.substring(0, 1)));
+        if (word.length() > 1) {
+            grams.add(prefixGram(word.substring(0, 2)));
+        }
+        grams.addAll(trigrams(word));
+        return grams;
+    }
+
+    // Marked so a word start never collides with a trigram
+    private static String prefixGram(String start) {
+        return "^" + start;
+    }
+
+    private static List<String> trigrams(String word) {
+        List<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            trigrams.add(word.substring(i, i + GRAM));
+        }
+        return trigrams;
+    }
+
+    // Linear merge of a sorted list with its removals and additions; an ordinal in both stays
+    private static int[] merge(int[] current, Set<Integer> minus, Set<Integer> plus) {
+        int[] add = plus.stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] out = new int[current.length + add.length];
+        int i = 0, j = 0, n = 0;
+        while (i < current.length || j < add.length) {
+            int next;
+            if (j == add.length || (i < current.length && current[i] <= add[j])) {
+                next = current[i++];
+                if (j < add.length && add[j] == next) {
+                    j++;
+                }
+            } else {
+                next = add[j++];
+            }
+            if (plus.contains(next) || !minus.contains(next)) {
+                out[n++] = next;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    private static long stringBytes(String value) {
+        return 40 + (long) value.length();
+    }
+
+    // Growable sorted ordinal list used while building
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.vegstore.entity.Product;
 import com.vegstore.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Optional;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Product> getAllProducts() {
         return productRepository.findAll();
@@ -34,6 +37,27 @@ public class ProductService {
         return productRepository.findByNameContainingIgnoreCase(keyword);
     }
 
+    /** A page of the admin product list, by name or, with sort "newest", newest first. */
+    public KeysetPage<Product> getProductPage(String category, Long supplierId, String sort, String cursor, int size) {
+        String categoryFilter = KeysetPage.blankToNull(category);
+        PageRequest limit = PageRequest.of(0, size + 1);
+        if ("newest".equals(sort)) {
+            List<String> before = KeysetPage.decode(cursor, 1);
+            Long beforeId = before.isEmpty() ? null : KeysetPage.parse(before.get(0), Long::valueOf);
+            return KeysetPage.of(productRepository.findPageNewest(categoryFilter, supplierId, beforeId, limit), size,
+                    product -> List.of(product.getId()));
+        }
+        List<String> after = KeysetPage.decode(cursor, 2);
+        String afterName = after.isEmpty() ? null : after.get(0);
+        Long afterId = after.isEmpty() ? null : KeysetPage.parse(after.get(1), Long::valueOf);
+        return KeysetPage.of(productRepository.findPageByName(categoryFilter, supplierId, afterName, afterId, limit), size,
+                product -> List.of(product.getName(), product.getId()));
+    }
+
+    public List<String> getCategories() {
+        return productRepository.findCategories();
+    }
+
     public List<Product> getAvailableProducts() {
         return productRepository.findByStockKgGreaterThan(0.0);
     }
@@ -41,7 +65,9 @@ public class ProductService {
     @Transactional
     public Product createProduct(Product product) {
         log.info("Creating new product: {}", product.getName());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductEvent(ProductEvent.Type.CREATED, saved.getId()));
+        return saved;
     }
 
     @Transactional
@@ -58,28 +84,34 @@ public class ProductService {
         existing.setImageUrl(product.getImageUrl());
 
         log.info("Updating product: {}", product.getName());
-        return productRepository.save(existing);
+        Product saved = productRepository.save(existing);
+        eventPublisher.publishEvent(new ProductEvent(ProductEvent.Type.UPDATED, saved.getId()));
+        return saved;
     }
 
     @Transactional
     public void deleteProduct(Long id) {
+        if (!productRepository.existsById(id)) {
+            return;
+        }
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductEvent(ProductEvent.Type.DELETED, id));
     }
 
     @Transactional
     public void updateStock(Long productId, Double quantity) {
-        Product product = getProductById(productId);
-        product.setStockKg(product.getStockKg() + quantity);
-        productRepository.save(product);
+        if (productRepository.incrementStock(productId, quantity) == 0) {
+            throw new RuntimeException("Product not found");
+        }
+        eventPublisher.publishEvent(new ProductEvent(ProductEvent.Type.STOCK_CHANGED, productId));
     }
 
     @Transactional
     public void decreaseStock(Long productId, Double quantity) {
-        Product product = getProductById(productId);
-        if (product.getStockKg() < quantity) {
+        if (productRepository.decrementStockIfAvailable(productId, quantity) == 0) {
+            Product product = getProductById(productId);
             throw new RuntimeException("Insufficient stock for product: " + product.getName());
         }
-        product.setStockKg(product.getStockKg() - quantity);
-        productRepository.save(product);
+        eventPublisher.publishEvent(new ProductEvent(ProductEvent.Type.STOCK_CHANGED, productId));
     }
 }
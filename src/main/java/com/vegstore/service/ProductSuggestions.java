@@ -0,0 +1,258 @@
+package com.vegstore.service;
+
+import java.util.*;
+
+/**
+ * Immutable typeahead over product names. Every word start of a normalized name is a key ("spinach
+ * palak" and "palak" for "Spinach (Palak)"), kept in one sorted array so a prefix is a contiguous run
+ * found by two binary searches. Products are numbered by popularity rank, so the best suggestions in
+ * a run are simply its smallest ordinals: short runs are scanned, and the few prefixes whose run is
+ * long enough to matter (the upper levels of the implied trie) have their top suggestions precomputed.
+ * A lookup allocates only its result. Suggestions are product IDs, resolved by {@link CatalogService}
+ * against its current snapshot, so stock and price moves never require a rebuild.
+ */
+public final class ProductSuggestions {
+
+    // Runs at most this long are scanned; longer ones are precomputed
+    private static final int SCAN_LIMIT = 256;
+    private static final int[] NONE = new int[0];
+
+    public static final ProductSuggestions EMPTY = new ProductSuggestions(new long[0], new String[0], NONE,
+            Map.of(), Map.of(), 0);
+
+    // Product IDs, most popular first
+    private final long[] ids;
+    // Sorted; entries[i] is the ranked ordinal keys[i] belongs to
+    private final String[] keys;
+    private final int[] entries;
+    // Prefix -> its best ordinals, for prefixes with more than SCAN_LIMIT keys
+    private final Map<String, int[]> top;
+    private final Map<Long, Double> popularity;
+    private final int maxResults;
+
+    private ProductSuggestions(long[] ids, String[] keys, int[] entries, Map<String, int[]> top,
+                               Map<Long, Double> popularity, int maxResults) {
+        this.ids = ids;
+        this.keys = keys;
+        this.entries = entries;
+        this.top = top;
+        this.popularity = popularity;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Suggestions for {@code products}, ranked by {@code popularity} (higher first, then name), with at
+     * most {@code maxResults} returned per lookup.
+     */
+    public static ProductSuggestions build(Collection<CatalogProduct> products, Map<Long, Double> popularity,
+                                           int maxResults) {
+        List<Candidate> candidates = new ArrayList<>(products.size());
+        for (CatalogProduct product : products) {
+            candidates.add(new Candidate(product.getId(), normalize(product.getName()),
+                    popularity.getOrDefault(product.getId(), 0.0)));
+        }
+        Collections.sort(candidates);
+
+        long[] ids = new long[candidates.size()];
+        List<Key> pairs = new ArrayList<>();
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            ids[ordinal] = candidates.get(ordinal).id();
+            for (String key : keysOf(candidates.get(ordinal).name())) {
+                pairs.add(new Key(key, ordinal));
+            }
+        }
+        Collections.sort(pairs);
+        String[] keys = new String[pairs.size()];
+        int[] entries = new int[pairs.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = pairs.get(i).key();
+            entries[i] = pairs.get(i).ordinal();
+        }
+
+        Map<String, int[]> top = new HashMap<>();
+        ProductSuggestions suggestions = new ProductSuggestions(ids, keys, entries, top, Map.copyOf(popularity),
+                maxResults);
+        suggestions.precompute(0, keys.length, 1);
+        return suggestions;
+    }
+
+    /** Whether a change from {@code before} to {@code after} needs the suggestions rebuilt. */
+    public static boolean nameChanged(CatalogProduct before, CatalogProduct after) {
+        return !Objects.equals(before.getName(), after.getName());
+    }
+
+    /** This ranking applied to a changed product list; popularity is kept until the next full build. */
+    public ProductSuggestions withProducts(Collection<CatalogProduct> products) {
+        return build(products, popularity, maxResults);
+    }
+
+    /**
+     * IDs of up to {@code limit} (at most the configured maximum) products with a name word starting
+     * with {@code prefix}, most popular first.
+     */
+    public List<Long> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        int wanted = Math.min(limit, maxResults);
+        if (normalized.isEmpty() || wanted <= 0) {
+            return List.of();
+        }
+        int lo = lowerBound(normalized);
+        int hi = upperBound(normalized, lo);
+        if (lo == hi) {
+            return List.of();
+        }
+        int[] best = hi - lo > SCAN_LIMIT ? top.get(normalized) : null;
+        if (best == null) {
+            best = best(lo, hi);
+        }
+        List<Long> result = new ArrayList<>(Math.min(wanted, best.length));
+        for (int i = 0; i < best.length && i < wanted; i++) {
+            result.add(ids[best[i]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public Map<String, Object> footprint() {
+        long topEntries = 0;
+        for (int[] ordinals : top.values()) {
+            topEntries += ordinals.length;
+        }
+        Map<String, Object> footprint = new LinkedHashMap<>();
+        footprint.put("products", ids.length);
+        footprint.put("keys", keys.length);
+        footprint.put("precomputedPrefixes", top.size());
+        footprint.put("precomputedEntries", topEntries);
+        return footprint;
+    }
+
+    // Records the best ordinals of every run longer than SCAN_LIMIT; keys in [lo, hi) share depth - 1 characters
+    private void precompute(int lo, int hi, int depth) {
+        int i = lo;
+        // A key exactly depth - 1 long sorts first and has no longer prefix
+        while (i < hi && keys[i].length() < depth) {
+            i++;
+        }
+        while (i < hi) {
+            char c = keys[i].charAt(depth - 1);
+            int end = i + 1;
+            while (end < hi && keys[end].charAt(depth - 1) == c) {
+                end++;
+            }
+            if (end - i > SCAN_LIMIT) {
+                top.put(keys[i].substring(0, depth), best(i, end));
+                precompute(i, end, depth + 1);
+            }
+            i = end;
+        }
+    }
+
+    // The smallest distinct ordinals in [lo, hi), ascending
+    private int[] best(int lo, int hi) {
+        int[] best = new int[maxResults];
+        int size = 0;
+        for (int i = lo; i < hi; i++) {
+            int ordinal = entries[i];
+            if (size == best.length && ordinal >= best[size - 1]) {
+                continue;
+            }
+            int at = Arrays.binarySearch(best, 0, size, ordinal);
+            if (at >= 0) {
+                continue;
+            }
+            at = -at - 1;
+            int moved = Math.min(size, best.length - 1) - at;
+            System.arraycopy(best, at, best, at + 1, moved);
+            best[at] = ordinal;
+            size = Math.min(size + 1, best.length);
+        }
+        return size == best.length ? best : Arrays.copyOf(best, size);
+    }
+
+    // First key not before the prefix
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // First key from lo on that no longer starts with the prefix
+    private int upperBound(String prefix, int lo) {
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].startsWith(prefix)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Takes a normalized name
+    private static List<String> keysOf(String normalized) {
+        List<String> keys = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    // Lowercase words separated by single spaces, so "Spinach (Palak)" and "spinach  pal" line up
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    // Most popular first, then by name
+    private record Candidate(long id, String name, double popularity) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            int order = Double.compare(other.popularity, popularity);
+            if (order == 0) {
+                order = name.compareTo(other.name);
+            }
+            return order != 0 ? order : Long.compare(id, other.id);
+        }
+    }
+
+    private record Key(String key, int ordinal) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int order = key.compareTo(other.key);
+            return order != 0 ? order : Integer.compare(ordinal, other.ordinal);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.PurchaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revenue, COGS, salary expense and profit from three aggregate queries: order totals, kg sold per
+ * product, and each product's latest purchase cost. Results are cached per date range until the
+ * next committed order or purchase change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProfitAnalysisService {
+
+    private static final BigDecimal SALARY_RATE = BigDecimal.valueOf(0.1);
+    private static final LocalDate EARLIEST = LocalDate.of(1970, 1, 1);
+    private static final LocalDate LATEST = LocalDate.of(9999, 1, 1);
+    private static final int MAX_CACHED_RANGES = 64;
+
+    private final OrderRepository orderRepository;
+    private final PurchaseRepository purchaseRepository;
+
+    private final Map<Range, Map<String, BigDecimal>> cache = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a computation that overlapped a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private record Range(LocalDate from, LocalDate to) {
+    }
+
+    /** Profit figures for orders created between {@code from} and {@code to} inclusive; null means unbounded. */
+    public Map<String, BigDecimal> getProfitAnalysis(LocalDate from, LocalDate to) {
+        Range range = new Range(from != null ? from : EARLIEST, to != null ? to : LATEST);
+        Map<String, BigDecimal> cached = cache.get(range);
+        if (cached != null) {
+            return cached;
+        }
+
+        long startGeneration = generation.get();
+        Map<String, BigDecimal> analysis = Collections.unmodifiableMap(compute(range));
+        if (generation.get() == startGeneration) {
+            if (cache.size() >= MAX_CACHED_RANGES) {
+                cache.clear();
+            }
+            cache.put(range, analysis);
+        }
+        return analysis;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        // Claiming changes nothing that profit depends on; completion (salary) and cancellation do
+        if (event.type() != OrderEvent.Type.CLAIMED) {
+            invalidate();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPurchaseEvent(PurchaseEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private Map<String, BigDecimal> compute(Range range) {
+        LocalDateTime from = range.from().atStartOfDay();
+        LocalDateTime to = range.to().plusDays(1).atStartOfDay();
+
+        Object[] totals = orderRepository.sumRevenueBetween(
+                Order.OrderStatus.CANCELLED, Order.OrderStatus.COMPLETED, from, to).get(0);
+        BigDecimal totalRevenue = toBigDecimal(totals[0]);
+        BigDecimal totalSalaryExpense = toBigDecimal(totals[1]).multiply(SALARY_RATE);
+
+        // Per-product cost table; where several purchases share the latest date the newest row wins
+        Map<Long, BigDecimal> latestCost = new HashMap<>();
+        Map<Long, Long> latestPurchaseId = new HashMap<>();
+        for (Object[] row : purchaseRepository.findLatestCostPerProduct()) {
+            Long productId = (Long) row[0];
+            Long purchaseId = (Long) row[1];
+            if (latestPurchaseId.getOrDefault(productId, Long.MIN_VALUE) < purchaseId) {
+                latestPurchaseId.put(productId, purchaseId);
+                latestCost.put(productId, (BigDecimal) row[2]);
+            }
+        }
+
+        // Products never purchased cost zero, as before
+        BigDecimal totalCogs = BigDecimal.ZERO;
+        List<Object[]> quantities = orderRepository.sumQuantityByProductBetween(Order.OrderStatus.CANCELLED, from, to);
+        for (Object[] row : quantities) {
+            BigDecimal cost = latestCost.getOrDefault((Long) row[0], BigDecimal.ZERO);
+            totalCogs = totalCogs.add(cost.multiply(BigDecimal.valueOf(((Number) row[1]).doubleValue())));
+        }
+
+        BigDecimal grossProfit = totalRevenue.subtract(totalCogs);
+        BigDecimal netProfit = grossProfit.subtract(totalSalaryExpense);
+
+        Map<String, BigDecimal> analysis = new LinkedHashMap<>();
+        analysis.put("revenue", totalRevenue);
+        analysis.put("cogs", totalCogs);
+        analysis.put("salary", totalSalaryExpense);
+        analysis.put("profit", netProfit);
+
+        log.debug("Profit analysis {}..{} computed over {} products", range.from(), range.to(), quantities.size());
+        return analysis;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return value == null ? BigDecimal.ZERO : new BigDecimal(value.toString());
+    }
+}
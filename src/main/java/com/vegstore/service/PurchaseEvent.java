@@ -0,0 +1,10 @@
+package com.vegstore.service;
+
+/**
+ * Published by {@link PurchaseService} when a purchase is recorded or removed, which changes
+ * stock and the cost basis used for profit figures.
+ */
+public record PurchaseEvent(Type type, Long purchaseId, Long productId) {
+
+    public enum Type { CREATED, DELETED }
+}
@@ -4,8 +4,12 @@ import com.vegstore.entity.Purchase;
 import com.vegstore.repository.PurchaseRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -15,11 +19,24 @@ public class PurchaseService {
 
     private final PurchaseRepository purchaseRepository;
     private final ProductService productService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Purchase> getAllPurchases() {
         return purchaseRepository.findAll();
     }
 
+    /** A page of purchases, newest first, optionally for one supplier or product and between two dates (inclusive). */
+    public KeysetPage<Purchase> getPurchasePage(Long supplierId, Long productId, LocalDate from, LocalDate to,
+                                                String cursor, int size) {
+        List<String> before = KeysetPage.decode(cursor, 2);
+        LocalDateTime beforeDate = before.isEmpty() ? null : KeysetPage.parse(before.get(0), LocalDateTime::parse);
+        Long beforeId = before.isEmpty() ? null : KeysetPage.parse(before.get(1), Long::valueOf);
+        List<Purchase> rows = purchaseRepository.findPage(supplierId, productId,
+                from == null ? null : from.atStartOfDay(), to == null ? null : to.plusDays(1).atStartOfDay(),
+                beforeDate, beforeId, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, purchase -> List.of(purchase.getPurchaseDate(), purchase.getId()));
+    }
+
     public Purchase getPurchaseById(Long id) {
         return purchaseRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Purchase not found with id: " + id));
@@ -34,6 +51,8 @@ public class PurchaseService {
 
         Purchase savedPurchase = purchaseRepository.save(purchase);
         log.info("Purchase created with ID: {}", savedPurchase.getId());
+        eventPublisher.publishEvent(new PurchaseEvent(PurchaseEvent.Type.CREATED, savedPurchase.getId(),
+                purchase.getProduct().getId()));
 
         return savedPurchase;
     }
@@ -41,6 +60,10 @@ public class PurchaseService {
     @Transactional
     public void deletePurchase(Long id) {
         log.info("Deleting purchase with id: {}", id);
+        Long productId = purchaseRepository.findById(id)
+                .map(purchase -> purchase.getProduct().getId())
+                .orElse(null);
         purchaseRepository.deleteById(id);
+        eventPublisher.publishEvent(new PurchaseEvent(PurchaseEvent.Type.DELETED, id, productId));
     }
 }
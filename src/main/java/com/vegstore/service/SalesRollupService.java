@@ -0,0 +1,274 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.entity.SalesRollup;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.SalesRollupRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hourly sales rollup (non-cancelled orders by creation hour), so trends read O(days) rows instead
+ * of every order. Committed order events accrue into per-hour {@link LongAdder}s and are written to
+ * {@code sales_rollup} periodically and on shutdown; checkouts never touch the bucket rows. Reads
+ * add the unflushed deltas on top of the table.
+ */
+@Service
+@Slf4j
+public class SalesRollupService {
+
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+
+    private static final class Delta {
+        final LongAdder orders = new LongAdder();
+        final LongAdder revenuePaise = new LongAdder();
+    }
+
+    private final SalesRollupRepository rollupRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderCommitFence commitFence;
+    // Creation hour (truncated) to the change not yet written to its bucket row
+    private final Map<LocalDateTime, Delta> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public SalesRollupService(SalesRollupRepository rollupRepository,
+                              OrderRepository orderRepository,
+                              OrderCommitFence commitFence,
+                              PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.orderRepository = orderRepository;
+        this.commitFence = commitFence;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Only committed orders count; a rolled-back checkout never accrues
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        boolean counted = event.status() != Order.OrderStatus.CANCELLED;
+        int delta = switch (event.type()) {
+            case CREATED -> counted ? 1 : 0;
+            case STATUS_CHANGED -> {
+                boolean wasCounted = event.previousStatus() != Order.OrderStatus.CANCELLED;
+                yield counted == wasCounted ? 0 : (counted ? 1 : -1);
+            }
+            case CLAIMED -> 0;
+        };
+        if (delta != 0) {
+            long paise = delta * toPaise(event.totalAmount());
+            // Accrued inside compute() so it can't land in an entry the flush is removing
+            pending.compute(event.orderCreatedAt().truncatedTo(ChronoUnit.HOURS), (hour, bucket) -> {
+                Delta accrued = bucket != null ? bucket : new Delta();
+                accrued.orders.add(delta);
+                accrued.revenuePaise.add(paise);
+                return accrued;
+            });
+        }
+    }
+
+    /** Daily revenue for the last {@code days} days (today included), zero-filled. */
+    public Map<String, BigDecimal> getDailySalesTrend(int days) {
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        Map<String, BigDecimal> salesByDate = new TreeMap<>();
+        for (LocalDate date = from; !date.isAfter(LocalDate.now()); date = date.plusDays(1)) {
+            salesByDate.put(date.toString(), BigDecimal.ZERO);
+        }
+        for (Object[] row : rollupRepository.sumByDateFrom(from)) {
+            salesByDate.put(row[0].toString(), (BigDecimal) row[2]);
+        }
+        pending.forEach((hour, delta) -> salesByDate.computeIfPresent(hour.toLocalDate().toString(),
+                (date, revenue) -> revenue.add(fromPaise(delta.revenuePaise.sum()))));
+        return salesByDate;
+    }
+
+    /** Hourly revenue for the last {@code hours} hours (current hour included), zero-filled. */
+    public Map<String, BigDecimal> getHourlySalesTrend(int hours) {
+        LocalDateTime now = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0);
+        LocalDateTime from = now.minusHours(hours - 1L);
+        Map<String, BigDecimal> salesByHour = new LinkedHashMap<>();
+        for (LocalDateTime hour = from; !hour.isAfter(now); hour = hour.plusHours(1)) {
+            salesByHour.put(hour.format(HOUR_LABEL), BigDecimal.ZERO);
+        }
+        for (SalesRollup bucket : rollupRepository.findByBucketDateGreaterThanEqualOrderByBucketDateAscBucketHourAsc(from.toLocalDate())) {
+            String label = bucket.getBucketDate().atTime(bucket.getBucketHour(), 0).format(HOUR_LABEL);
+            salesByHour.computeIfPresent(label, (key, zero) -> bucket.getRevenue());
+        }
+        pending.forEach((hour, delta) -> salesByHour.computeIfPresent(hour.format(HOUR_LABEL),
+                (label, revenue) -> revenue.add(fromPaise(delta.revenuePaise.sum()))));
+        return salesByHour;
+    }
+
+    /** Replaces the rollup with a full recompute from the orders table; returns the number of buckets. */
+    public int rebuild() {
+        Integer buckets;
+        flushLock.lock();
+        try {
+            // Hour to the {orders, paise} pending when the recompute read the orders table
+            Map<LocalDateTime, long[]> covered = new HashMap<>();
+            buckets = transactionTemplate.execute(status -> {
+                Map<String, SalesRollup> recomputed = commitFence.exclusive(() -> {
+                    pending.forEach((hour, delta) ->
+                            covered.put(hour, new long[]{delta.orders.sum(), delta.revenuePaise.sum()}));
+                    return recompute();
+                });
+                rollupRepository.deleteAllBuckets();
+                List<SalesRollup> rebuilt = new ArrayList<>(recomputed.values());
+                rollupRepository.saveAll(rebuilt);
+                return rebuilt.size();
+            });
+            // Only the deltas the recompute already counted are dropped; later ones still go to the new buckets
+            covered.forEach((hour, seen) -> pending.computeIfPresent(hour, (key, delta) -> {
+                delta.orders.add(-seen[0]);
+                delta.revenuePaise.add(-seen[1]);
+                return delta;
+            }));
+        } finally {
+            flushLock.unlock();
+        }
+        log.info("Sales rollup rebuilt: {} hourly buckets", buckets);
+        return buckets;
+    }
+
+    /** Compares every bucket against a full recompute and reports the ones that disagree. */
+    public Map<String, Object> verify() {
+        flush();
+        Map<String, SalesRollup> expected = recompute();
+        Map<String, SalesRollup> actual = new HashMap<>();
+        for (SalesRollup bucket : rollupRepository.findAll()) {
+            actual.put(key(bucket.getBucketDate(), bucket.getBucketHour()), bucket);
+        }
+
+        Set<String> keys = new TreeSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        List<Map<String, Object>> mismatches = new ArrayList<>();
+        for (String key : keys) {
+            SalesRollup want = expected.get(key);
+            SalesRollup have = actual.get(key);
+            long wantCount = want != null ? want.getOrderCount() : 0;
+            long haveCount = have != null ? have.getOrderCount() : 0;
+            BigDecimal wantRevenue = want != null ? want.getRevenue() : BigDecimal.ZERO;
+            BigDecimal haveRevenue = have != null ? have.getRevenue() : BigDecimal.ZERO;
+            if (wantCount != haveCount || wantRevenue.compareTo(haveRevenue) != 0) {
+                Map<String, Object> mismatch = new LinkedHashMap<>();
+                mismatch.put("bucket", key);
+                mismatch.put("expectedOrders", wantCount);
+                mismatch.put("rollupOrders", haveCount);
+                mismatch.put("expectedRevenue", wantRevenue);
+                mismatch.put("rollupRevenue", haveRevenue);
+                mismatches.add(mismatch);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("consistent", mismatches.isEmpty());
+        result.put("bucketsChecked", keys.size());
+        result.put("mismatches", mismatches);
+        return result;
+    }
+
+    // Backfill history the first time the rollup runs against an existing database
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (rollupRepository.count() == 0 && orderRepository.count() > 0) {
+            log.info("Sales rollup is empty, backfilling from orders");
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vegstore.sales.rollup.flush-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        flushLock.lock();
+        try {
+            pending.forEach(this::flushBucket);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+        log.info("Sales rollup flushed on shutdown");
+    }
+
+    private void flushBucket(LocalDateTime hour, Delta delta) {
+        // sumThenReset takes each stripe atomically, so concurrent accruals land in this flush or the next
+        long orders = delta.orders.sumThenReset();
+        long paise = delta.revenuePaise.sumThenReset();
+        if (orders == 0 && paise == 0) {
+            // Drop written-out past hours; a late cancellation simply recreates the entry
+            if (hour.isBefore(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS))) {
+                pending.computeIfPresent(hour, (key, bucket) ->
+                        bucket.orders.sum() == 0 && bucket.revenuePaise.sum() == 0 ? null : bucket);
+            }
+            return;
+        }
+        LocalDate date = hour.toLocalDate();
+        BigDecimal revenue = fromPaise(paise);
+        try {
+            // Bucket rows are only inserted here and in rebuild(), both under flushLock, so the insert can't race
+            transactionTemplate.executeWithoutResult(status -> {
+                if (rollupRepository.addToBucket(date, hour.getHour(), orders, revenue) == 0) {
+                    rollupRepository.save(SalesRollup.builder()
+                            .bucketDate(date)
+                            .bucketHour(hour.getHour())
+                            .orderCount(orders)
+                            .revenue(revenue)
+                            .build());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Put the delta back so the next flush retries it
+            delta.orders.add(orders);
+            delta.revenuePaise.add(paise);
+            log.error("Sales rollup flush failed for bucket {}: {}", hour.format(HOUR_LABEL), e.getMessage());
+        }
+    }
+
+    private Map<String, SalesRollup> recompute() {
+        Map<String, SalesRollup> buckets = new HashMap<>();
+        for (Object[] row : orderRepository.aggregateSalesByHour(Order.OrderStatus.CANCELLED)) {
+            LocalDate date = (LocalDate) row[0];
+            int hour = ((Number) row[1]).intValue();
+            buckets.put(key(date, hour), SalesRollup.builder()
+                    .bucketDate(date)
+                    .bucketHour(hour)
+                    .orderCount(((Number) row[2]).longValue())
+                    .revenue((BigDecimal) row[3])
+                    .build());
+        }
+        return buckets;
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromPaise(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    private static String key(LocalDate date, int hour) {
+        return date + " " + (hour < 10 ? "0" : "") + hour + ":00";
+    }
+}
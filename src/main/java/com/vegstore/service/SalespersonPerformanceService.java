@@ -0,0 +1,92 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.Order;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.SalespersonStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Completed-order count, revenue, commission and average handling time per salesperson, from one
+ * GROUP BY query. Held for a short TTL and dropped as soon as an order status change commits.
+ */
+@Service
+@Slf4j
+public class SalespersonPerformanceService {
+
+    private static final BigDecimal COMMISSION_RATE = BigDecimal.valueOf(0.1);
+
+    public record Performance(Long salespersonId, String name, long completedOrders, BigDecimal revenue,
+                              BigDecimal commission, Double avgHandlingSeconds) {
+    }
+
+    private record Snapshot(List<Performance> performance, long expiresAt) {
+    }
+
+    private final OrderRepository orderRepository;
+    private final long ttlNanos;
+    private volatile Snapshot snapshot;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SalespersonPerformanceService(OrderRepository orderRepository,
+                                         @Value("${vegstore.admin.performance-cache-seconds:30}") long ttlSeconds) {
+        this.orderRepository = orderRepository;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+    }
+
+    public List<Performance> getPerformance() {
+        Snapshot current = snapshot;
+        if (current != null && System.nanoTime() - current.expiresAt() < 0) {
+            return current.performance();
+        }
+
+        long startGeneration = generation.get();
+        List<Performance> performance = orderRepository.getSalespersonPerformance(Order.OrderStatus.COMPLETED)
+                .stream()
+                .map(SalespersonPerformanceService::toPerformance)
+                .toList();
+        // A status change that committed while we were querying makes this result stale; don't keep it
+        if (generation.get() == startGeneration) {
+            snapshot = new Snapshot(performance, System.nanoTime() + ttlNanos);
+        }
+        return performance;
+    }
+
+    /** Salesperson name to completed order count, the shape the admin chart expects. */
+    public Map<String, Long> getCompletedOrderCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Performance performance : getPerformance()) {
+            counts.merge(performance.name(), performance.completedOrders(), Long::sum);
+        }
+        return counts;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderEvent(OrderEvent event) {
+        if (event.type() == OrderEvent.Type.STATUS_CHANGED) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+
+    private static Performance toPerformance(SalespersonStats stats) {
+        BigDecimal revenue = stats.getRevenue() != null ? stats.getRevenue() : BigDecimal.ZERO;
+        return new Performance(stats.getSalespersonId(),
+                stats.getName(),
+                stats.getCompletedOrders(),
+                revenue,
+                revenue.multiply(COMMISSION_RATE).setScale(2, RoundingMode.HALF_UP),
+                stats.getAvgHandlingSeconds());
+    }
+}
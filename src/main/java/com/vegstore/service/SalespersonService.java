@@ -4,6 +4,8 @@ import com.vegstore.entity.Order;
 import com.vegstore.entity.User;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
 import java.util.List;
 
 @Service
@@ -11,6 +13,7 @@ import java.util.List;
 public class SalespersonService {
 
     private final OrderService orderService;
+    private final CommissionLedgerService commissionLedgerService;
 
     public List<Order> getAvailableOrders() {
         return orderService.getPendingOrders();
@@ -20,10 +23,18 @@ public class SalespersonService {
         return orderService.getSalespersonOrders(salesperson);
     }
 
+    public BigDecimal getEarnedCommission(User salesperson) {
+        return commissionLedgerService.getCommission(salesperson.getId());
+    }
+
     public Order claimOrder(Long orderId, User salesperson) {
         return orderService.claimOrder(orderId, salesperson);
     }
 
+    public Order claimNextOrder(User salesperson) {
+        return orderService.claimNextOrder(salesperson);
+    }
+
     public Order updateOrderStatus(Long orderId, Order.OrderStatus status, User currentUser) {
         return orderService.updateOrderStatus(orderId, status);
     }
@@ -0,0 +1,9 @@
+package com.vegstore.service;
+
+/**
+ * Published by {@link SearchSynonymService} when a synonym group is created, edited or deleted.
+ */
+public record SearchSynonymEvent(Type type, Long synonymId) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+}
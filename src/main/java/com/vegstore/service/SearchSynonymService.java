@@ -0,0 +1,94 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.SearchSynonym;
+import com.vegstore.repository.SearchSynonymRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Admin-managed synonym groups for product search. {@link CatalogService} keeps the expanded
+ * dictionary in its snapshot and reloads it when a group changes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchSynonymService {
+
+    private final SearchSynonymRepository searchSynonymRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<SearchSynonym> getAllSynonyms() {
+        return searchSynonymRepository.findAll();
+    }
+
+    @Transactional
+    public SearchSynonym createSynonym(String words) {
+        SearchSynonym saved = searchSynonymRepository.save(SearchSynonym.builder().words(normalize(words)).build());
+        log.info("Created search synonyms: {}", saved.getWords());
+        eventPublisher.publishEvent(new SearchSynonymEvent(SearchSynonymEvent.Type.CREATED, saved.getId()));
+        return saved;
+    }
+
+    @Transactional
+    public SearchSynonym updateSynonym(Long id, String words) {
+        SearchSynonym existing = searchSynonymRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Search synonym not found with id: " + id));
+        existing.setWords(normalize(words));
+        SearchSynonym saved = searchSynonymRepository.save(existing);
+        eventPublisher.publishEvent(new SearchSynonymEvent(SearchSynonymEvent.Type.UPDATED, id));
+        return saved;
+    }
+
+    @Transactional
+    public void deleteSynonym(Long id) {
+        if (!searchSynonymRepository.existsById(id)) {
+            throw new RuntimeException("Search synonym not found with id: " + id);
+        }
+        searchSynonymRepository.deleteById(id);
+        eventPublisher.publishEvent(new SearchSynonymEvent(SearchSynonymEvent.Type.DELETED, id));
+    }
+
+    /** Each word of every group mapped to the other words it shares a group with. */
+    public static Map<String, List<String>> expansions(Collection<SearchSynonym> synonyms) {
+        Map<String, Set<String>> expansions = new HashMap<>();
+        for (SearchSynonym synonym : synonyms) {
+            List<String> words = List.of(synonym.getWords().split(","));
+            for (String word : words) {
+                Set<String> others = expansions.computeIfAbsent(word, w -> new LinkedHashSet<>());
+                others.addAll(words);
+                others.remove(word);
+            }
+        }
+        Map<String, List<String>> result = new HashMap<>();
+        expansions.forEach((word, others) -> result.put(word, List.copyOf(others)));
+        return Map.copyOf(result);
+    }
+
+    // Lowercase, de-duplicated, comma-separated; search matches word by word, so phrases are refused
+    private static String normalize(String words) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String word : (words == null ? "" : words).split(",")) {
+            String trimmed = word.trim().toLowerCase(Locale.ROOT);
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!trimmed.matches("[\\p{L}\\p{Nd}]+")) {
+                throw new RuntimeException("Synonyms must be single words: " + word.trim());
+            }
+            normalized.add(trimmed);
+        }
+        if (normalized.size() < 2) {
+            throw new RuntimeException("A synonym group needs at least two different words");
+        }
+        String joined = String.join(",", normalized);
+        if (joined.length() > 500) {
+            throw new RuntimeException("Synonym group is too long");
+        }
+        return joined;
+    }
+}
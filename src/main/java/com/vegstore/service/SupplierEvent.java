@@ -0,0 +1,9 @@
+package com.vegstore.service;
+
+/**
+ * Published by {@link SupplierService} when a supplier is created, edited or deleted.
+ */
+public record SupplierEvent(Type type, Long supplierId) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+}
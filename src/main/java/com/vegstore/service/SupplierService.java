@@ -4,6 +4,8 @@ import com.vegstore.entity.Supplier;
 import com.vegstore.repository.SupplierRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -14,11 +16,21 @@ import java.util.List;
 public class SupplierService {
 
     private final SupplierRepository supplierRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Supplier> getAllSuppliers() {
         return supplierRepository.findAll();
     }
 
+    /** A page of suppliers by name. */
+    public KeysetPage<Supplier> getSupplierPage(String cursor, int size) {
+        List<String> after = KeysetPage.decode(cursor, 2);
+        String afterName = after.isEmpty() ? null : after.get(0);
+        Long afterId = after.isEmpty() ? null : KeysetPage.parse(after.get(1), Long::valueOf);
+        return KeysetPage.of(supplierRepository.findPage(afterName, afterId, PageRequest.of(0, size + 1)), size,
+                supplier -> List.of(supplier.getName(), supplier.getId()));
+    }
+
     public Supplier getSupplierById(Long id) {
         return supplierRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Supplier not found with id: " + id));
@@ -33,6 +45,7 @@ public class SupplierService {
 
         Supplier savedSupplier = supplierRepository.save(supplier);
         log.info("Supplier saved with ID: {}", savedSupplier.getId());
+        eventPublisher.publishEvent(new SupplierEvent(SupplierEvent.Type.CREATED, savedSupplier.getId()));
 
         return savedSupplier;
     }
@@ -48,7 +61,9 @@ public class SupplierService {
         existing.setEmail(supplier.getEmail());
         existing.setAddress(supplier.getAddress());
 
-        return supplierRepository.save(existing);
+        Supplier saved = supplierRepository.save(existing);
+        eventPublisher.publishEvent(new SupplierEvent(SupplierEvent.Type.UPDATED, id));
+        return saved;
     }
 
     @Transactional
@@ -60,5 +75,6 @@ public class SupplierService {
         }
 
         supplierRepository.deleteById(id);
+        eventPublisher.publishEvent(new SupplierEvent(SupplierEvent.Type.DELETED, id));
     }
 }
@@ -0,0 +1,108 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.User;
+import com.vegstore.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU of users by ID, so resolving the signed-in user doesn't cost a query per request.
+ * Entries are evicted as soon as an account change commits. Callers get their own detached copy,
+ * never the cached instance.
+ */
+@Service
+@Slf4j
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final int maxEntries;
+    private final Map<Long, User> users;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${vegstore.user-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.maxEntries = maxEntries;
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, User> eldest) {
+                return size() > UserCache.this.maxEntries;
+            }
+        };
+    }
+
+    public Optional<User> get(Long userId) {
+        lock.lock();
+        try {
+            User cached = users.get(userId);
+            if (cached != null) {
+                return Optional.of(copyOf(cached));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long startGeneration = generation.get();
+        Optional<User> loaded = userRepository.findById(userId);
+        loaded.ifPresent(user -> {
+            lock.lock();
+            try {
+                // An account change that committed while we were loading makes this copy stale; don't keep it
+                if (generation.get() == startGeneration) {
+                    users.put(userId, copyOf(user));
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        return loaded;
+    }
+
+    public void evict(Long userId) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            users.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return users.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserEvent(UserEvent event) {
+        evict(event.userId());
+        log.debug("Evicted user {} from the user cache", event.username());
+    }
+
+    private static User copyOf(User user) {
+        return User.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .fullName(user.getFullName())
+                .role(user.getRole())
+                .isWholesale(user.getIsWholesale())
+                .createdAt(user.getCreatedAt())
+                .active(user.getActive())
+                .build();
+    }
+}
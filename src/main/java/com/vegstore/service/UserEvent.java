@@ -0,0 +1,19 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.User;
+
+/**
+ * Published by {@link UserService} when an account is created, edited, activated or deactivated, or
+ * deleted. Role and active flag are given before and after the change; "before" is null for CREATED
+ * and "after" is null for DELETED.
+ */
+public record UserEvent(Type type,
+                        Long userId,
+                        String username,
+                        User.Role role,
+                        Boolean active,
+                        User.Role previousRole,
+                        Boolean previousActive) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+}
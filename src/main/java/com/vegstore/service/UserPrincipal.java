@@ -0,0 +1,73 @@
+package com.vegstore.service;
+
+import com.vegstore.entity.User;
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The authenticated principal kept in the session. Carries what most requests need about the
+ * current user (ID, role, wholesale flag, display name) so they don't have to look the user up.
+ * Role and wholesale flag are as of login; use {@link CurrentUserService} for the current values.
+ */
+@Getter
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+    private final Long id;
+    private final String username;
+    private String password;
+    private final String fullName;
+    private final User.Role role;
+    private final Boolean isWholesale;
+    private final boolean active;
+
+    private UserPrincipal(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.fullName = user.getFullName();
+        this.role = user.getRole();
+        this.isWholesale = Boolean.TRUE.equals(user.getIsWholesale());
+        this.active = Boolean.TRUE.equals(user.getActive());
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    // Called once authentication succeeds, so the password hash isn't kept in the session
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return active;
+    }
+}
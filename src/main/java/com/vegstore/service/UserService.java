@@ -62,6 +62,8 @@ import com.vegstore.entity.User;
 import com.vegstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -75,6 +77,7 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public User registerUser(User user) {
@@ -94,9 +97,56 @@ public class UserService {
         User savedUser = userRepository.save(user);
 
         log.info("User registered successfully with ID: {}", savedUser.getId());
+        publishCreated(savedUser);
         return savedUser;
     }
 
+    /** Saves an account built by an admin; the password must already be encoded. */
+    @Transactional
+    public User createUser(User user) {
+        User savedUser = userRepository.save(user);
+        publishCreated(savedUser);
+        return savedUser;
+    }
+
+    /** Applies an admin edit; {@code encodedPassword} is null to keep the current password. */
+    @Transactional
+    public User updateUser(Long id, String fullName, String username, User.Role role, boolean wholesale,
+                           String encodedPassword) {
+        User user = getUserById(id);
+        User.Role previousRole = user.getRole();
+        user.setFullName(fullName);
+        user.setUsername(username);
+        user.setRole(role);
+        user.setIsWholesale(wholesale);
+        if (encodedPassword != null) {
+            user.setPassword(encodedPassword);
+        }
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.UPDATED, id, savedUser.getUsername(),
+                role, savedUser.getActive(), previousRole, savedUser.getActive()));
+        return savedUser;
+    }
+
+    @Transactional
+    public User setActive(Long id, boolean active) {
+        User user = getUserById(id);
+        Boolean previousActive = user.getActive();
+        user.setActive(active);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.UPDATED, id, savedUser.getUsername(),
+                savedUser.getRole(), active, savedUser.getRole(), previousActive));
+        return savedUser;
+    }
+
+    @Transactional
+    public void deleteUser(Long id) {
+        User user = getUserById(id);
+        userRepository.delete(user);
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.DELETED, id, user.getUsername(),
+                null, null, user.getRole(), user.getActive()));
+    }
+
     public User getUserById(Long id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -111,8 +161,19 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /** A page of accounts by username, optionally of one role or active state. */
+    public KeysetPage<User> getUserPage(User.Role role, Boolean active, String cursor, int size) {
+        List<String> after = KeysetPage.decode(cursor, 1);
+        return KeysetPage.of(userRepository.findPage(role, active, after.isEmpty() ? null : after.get(0),
+                PageRequest.of(0, size + 1)), size, user -> List.of(user.getUsername()));
+    }
+
     public List<User> getSalespersons() {
         return userRepository.findByRole(User.Role.SALESPERSON);
     }
-}
 
+    private void publishCreated(User user) {
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.CREATED, user.getId(), user.getUsername(),
+                user.getRole(), user.getActive(), null, null));
+    }
+}
@@ -1,5 +1,7 @@
 // Cart Management System - Database Backend Version
 let cart = [];
+// The badge is rendered by the server; pages that need the lines (cart, checkout) load them explicitly
+let cartLoaded = false;
 
 // Get CSRF token from meta tag
 function getCsrfToken() {
@@ -12,11 +14,6 @@ function getCsrfHeader() {
     return header ? header.getAttribute('content') : 'X-CSRF-TOKEN';
 }
 
-// Initialize cart from backend
-document.addEventListener('DOMContentLoaded', function() {
-    loadCartFromBackend();
-});
-
 // Load cart from backend
 async function loadCartFromBackend() {
     try {
@@ -30,6 +27,7 @@ async function loadCartFromBackend() {
             const data = await response.json();
             if (data.success) {
                 cart = data.items || [];
+                cartLoaded = true;
                 console.log('Cart loaded from backend:', cart.length, 'items');
                 updateCartBadge();
             }
@@ -43,97 +41,144 @@ async function loadCartFromBackend() {
     }
 }
 
-// Add item to cart
-async function addToCart(productId, name, quantity, retailPrice, wholesalePrice, minWholesaleQty) {
-    console.log('Adding to cart:', {productId, name, quantity});
+// ----- Batched cart changes -----
+// Edits made in quick succession are coalesced and sent together to /cart/batch, so a burst of
+// clicks costs one request. Only one batch is in flight at a time; edits made meanwhile go in the next.
+const CART_BATCH_DELAY_MS = 250;
+let pendingOps = [];
+let pendingWaiters = [];
+let batchTimer = null;
+let batchInFlight = null;
+
+// Queues an operation and resolves with the server's response to the batch that carried it
+function queueCartOperation(op) {
+    coalesceOperation(op);
+    applyOperationLocally(op);
+    const result = new Promise(resolve => pendingWaiters.push(resolve));
+    scheduleBatch();
+    return result;
+}
 
-    try {
-        const formData = new URLSearchParams();
-        formData.append('productId', productId);
-        formData.append('quantity', quantity);
+function coalesceOperation(op) {
+    if (op.type === 'ADD') {
+        const last = pendingOps[pendingOps.length - 1];
+        if (last && last.type === 'ADD' && last.productId === op.productId) {
+            last.quantity += op.quantity;
+            return;
+        }
+    } else {
+        // A later absolute change supersedes earlier updates and removals of the same product
+        pendingOps = pendingOps.filter(p => p.productId !== op.productId || p.type === 'ADD');
+    }
+    pendingOps.push({...op});
+}
 
-        const response = await fetch('/cart/add', {
-            method: 'POST',
-            headers: {
-                'Content-Type': 'application/x-www-form-urlencoded',
-                [getCsrfHeader()]: getCsrfToken()
-            },
-            body: formData
-        });
+// Keeps the page responsive while the batch is pending; the server's answer replaces this
+function applyOperationLocally(op) {
+    const index = cart.findIndex(i => i.productId === op.productId);
+    if (index < 0) {
+        return;
+    }
+    if (op.type === 'REMOVE' || (op.type === 'UPDATE' && op.quantity <= 0)) {
+        cart.splice(index, 1);
+    } else if (op.type === 'UPDATE') {
+        cart[index].quantity = op.quantity;
+    } else {
+        cart[index].quantity = parseFloat(cart[index].quantity) + op.quantity;
+    }
+}
 
-        if (response.ok) {
-            const data = await response.json();
-            if (data.success) {
-                cart = data.items || [];
-                updateCartBadge();
-                showNotification('✓ ' + name + ' added to cart!', 'success');
-                console.log('Cart updated. Total items:', cart.length);
-            } else {
-                showNotification(data.message || 'Failed to add item', 'danger');
-            }
-        } else {
-            showNotification('Failed to add item to cart', 'danger');
-        }
-    } catch (error) {
-        console.error('Error adding to cart:', error);
-        showNotification('Error adding to cart', 'danger');
+function scheduleBatch() {
+    if (batchTimer === null && batchInFlight === null) {
+        batchTimer = setTimeout(sendBatch, CART_BATCH_DELAY_MS);
     }
 }
 
-// Remove item from cart
-async function removeFromCart(productId) {
+async function sendBatch() {
+    batchTimer = null;
+    const operations = pendingOps;
+    const waiters = pendingWaiters;
+    pendingOps = [];
+    pendingWaiters = [];
+
+    let data;
+    batchInFlight = fetch('/cart/batch', {
+        method: 'POST',
+        headers: {
+            'Content-Type': 'application/json',
+            [getCsrfHeader()]: getCsrfToken()
+        },
+        body: JSON.stringify({operations: operations})
+    });
     try {
-        const response = await fetch(`/cart/remove/${productId}`, {
-            method: 'POST',
-            headers: {
-                [getCsrfHeader()]: getCsrfToken()
-            }
-        });
+        const response = await batchInFlight;
+        data = response.ok ? await response.json() : {success: false, message: 'Failed to update cart'};
+    } catch (error) {
+        console.error('Error updating cart:', error);
+        data = {success: false, message: 'Error updating cart'};
+    }
 
-        if (response.ok) {
-            const data = await response.json();
-            if (data.success) {
-                cart = data.items || [];
-                updateCartBadge();
-                return true;
-            }
+    if (data.success) {
+        cart = data.items || [];
+        cartLoaded = true;
+        // Edits queued while this batch was in flight are not in the response yet
+        pendingOps.forEach(applyOperationLocally);
+        updateCartBadge();
+        console.log('Cart batch applied:', operations.length, 'operations,', cart.length, 'items');
+    } else {
+        // The batch was rejected, so the edits already shown are undone by reloading what the server holds;
+        // the next batch waits for this so it can't be overwritten by an older cart
+        await loadCartFromBackend();
+        pendingOps.forEach(applyOperationLocally);
+        if (typeof renderCartPage === 'function') {
+            renderCartPage();
         }
-    } catch (error) {
-        console.error('Error removing from cart:', error);
+        console.log('Cart batch rejected, reloaded', cart.length, 'items');
+    }
+    batchInFlight = null;
+    waiters.forEach(resolve => resolve(data));
+
+    if (pendingOps.length > 0) {
+        scheduleBatch();
     }
-    return false;
 }
 
-// Update item quantity
-async function updateQuantity(productId, newQuantity) {
-    try {
-        const formData = new URLSearchParams();
-        formData.append('productId', productId);
-        formData.append('quantity', newQuantity);
+// Add item to cart
+async function addToCart(productId, name, quantity, retailPrice, wholesalePrice, minWholesaleQty) {
+    console.log('Adding to cart:', {productId, name, quantity});
 
-        const response = await fetch('/cart/update', {
-            method: 'POST',
-            headers: {
-                'Content-Type': 'application/x-www-form-urlencoded',
-                [getCsrfHeader()]: getCsrfToken()
-            },
-            body: formData
-        });
+    const data = await queueCartOperation({type: 'ADD', productId: Number(productId), quantity: parseFloat(quantity)});
+    if (data.success) {
+        showNotification('✓ ' + name + ' added to cart!', 'success');
+        console.log('Cart updated. Total items:', cart.length);
+    } else {
+        showNotification(data.message || 'Failed to add item', 'danger');
+    }
+}
 
-        if (response.ok) {
-            const data = await response.json();
-            if (data.success) {
-                cart = data.items || [];
-                updateCartBadge();
-            }
-        }
-    } catch (error) {
-        console.error('Error updating quantity:', error);
+// Remove item from cart
+async function removeFromCart(productId) {
+    const data = await queueCartOperation({type: 'REMOVE', productId: Number(productId)});
+    if (!data.success) {
+        showNotification(data.message || 'Failed to remove item', 'danger');
+    }
+    return data.success === true;
+}
+
+// Update item quantity
+async function updateQuantity(productId, newQuantity) {
+    const data = await queueCartOperation({type: 'UPDATE', productId: Number(productId), quantity: parseFloat(newQuantity)});
+    if (!data.success) {
+        showNotification(data.message || 'Failed to update quantity', 'danger');
     }
+    return data.success === true;
 }
 
-// Update cart badge
+// Update cart badge; until the cart has been loaded the server-rendered count stands
 function updateCartBadge() {
+    if (!cartLoaded) {
+        return;
+    }
     const badges = document.querySelectorAll('#cart-badge, #cart-badge-nav, .cart-badge');
     badges.forEach(badge => {
         if (badge) {
@@ -193,6 +238,3 @@ async function clearCart() {
 function saveCart() {
     console.log('saveCart() called - cart automatically saved to backend');
 }
-
-// Load cart on page load
-loadCartFromBackend();
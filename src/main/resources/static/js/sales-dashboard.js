@@ -0,0 +1,117 @@
+// Sales Dashboard live order feed (server-sent events from /sales/stream)
+document.addEventListener('DOMContentLoaded', function() {
+    const dashboard = document.getElementById('salesDashboard');
+    if (!dashboard || !window.EventSource) {
+        return;
+    }
+
+    const currentUserId = Number(dashboard.dataset.userId);
+    // First connect resumes from the position the page was rendered at; after that the
+    // browser sends Last-Event-ID itself on every reconnect
+    const renderedAt = dashboard.dataset.streamEventId || '';
+    const source = new EventSource('/sales/stream?lastEventId=' + encodeURIComponent(renderedAt));
+
+    source.onopen = function() {
+        setLiveStatus('Live', 'text-success');
+    };
+
+    source.onerror = function() {
+        setLiveStatus('Reconnecting…', 'text-warning');
+    };
+
+    source.addEventListener('order', function(e) {
+        const event = JSON.parse(e.data);
+        if (event.type === 'CREATED') {
+            addAvailableOrder(event);
+        } else if (event.type === 'CLAIMED') {
+            removeAvailableOrder(event.orderId);
+            if (event.salespersonId === currentUserId && !findMyOrder(event.orderId)) {
+                setLiveStatus('Order #' + event.orderId + ' assigned to you — refresh for details', 'text-primary');
+            }
+        } else if (event.type === 'STATUS_CHANGED') {
+            updateMyOrderStatus(event);
+        }
+    });
+
+    // The feed can't fill the gap (server restarted or we were away too long)
+    source.addEventListener('resync', function() {
+        source.close();
+        window.location.reload();
+    });
+});
+
+function setLiveStatus(text, cssClass) {
+    const status = document.getElementById('liveStatus');
+    if (!status) return;
+    status.className = 'small ' + cssClass;
+    status.innerHTML = '<i class="bi bi-broadcast me-1"></i> ' + text;
+}
+
+function addAvailableOrder(event) {
+    const body = document.getElementById('availableOrdersBody');
+    if (!body || body.querySelector('tr[data-order-id="' + event.orderId + '"]')) {
+        return;
+    }
+
+    const row = document.createElement('tr');
+    row.dataset.orderId = event.orderId;
+    row.classList.add('table-success');
+    row.innerHTML = `
+        <td>#${event.orderId}</td>
+        <td>${escapeHtml(event.customerName)}</td>
+        <td>₹<span>${event.totalAmount}</span></td>
+        <td>${formatDate(event.orderCreatedAt)}</td>
+        <td>
+            <form action="/sales/claim-order/${event.orderId}" method="post" style="display:inline;">
+                <button type="submit" class="btn btn-sm btn-success">
+                    <i class="bi bi-hand-thumbs-up me-1"></i> Claim
+                </button>
+            </form>
+        </td>`;
+    // Available orders are listed newest first
+    body.prepend(row);
+    refreshAvailableCount();
+}
+
+function removeAvailableOrder(orderId) {
+    const row = document.querySelector('#availableOrdersBody tr[data-order-id="' + orderId + '"]');
+    if (row) {
+        row.remove();
+        refreshAvailableCount();
+    }
+}
+
+function findMyOrder(orderId) {
+    return document.querySelector('.order-card[data-order-id="' + orderId + '"]');
+}
+
+function updateMyOrderStatus(event) {
+    const card = findMyOrder(event.orderId);
+    if (!card) return;
+
+    const badge = card.querySelector('.order-status');
+    if (badge) {
+        badge.textContent = event.status;
+    }
+}
+
+function refreshAvailableCount() {
+    const count = document.querySelectorAll('#availableOrdersBody tr').length;
+    document.getElementById('availableCount').textContent = count;
+    document.getElementById('availableBadge').textContent = count;
+    document.getElementById('availableOrdersTable').classList.toggle('d-none', count === 0);
+    document.getElementById('noAvailableOrders').classList.toggle('d-none', count > 0);
+}
+
+function formatDate(value) {
+    if (!value) return '';
+    return new Date(value).toLocaleString('en-GB', {
+        day: '2-digit', month: 'short', year: 'numeric', hour: '2-digit', minute: '2-digit', hour12: false
+    });
+}
+
+function escapeHtml(text) {
+    const div = document.createElement('div');
+    div.textContent = text || '';
+    return div.innerHTML;
+}
@@ -0,0 +1,46 @@
+package com.vegstore;
+
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/** Rows for tests, uniquely named so test classes sharing the database don't see each other's data. */
+public class TestData {
+
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+
+    public TestData(ProductRepository productRepository, UserRepository userRepository) {
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+    }
+
+    public User customer() {
+        return userRepository.save(User.builder()
+                .username("customer-" + UUID.randomUUID())
+                .password("{noop}secret")
+                .fullName("Test Customer")
+                .role(User.Role.CUSTOMER)
+                .isWholesale(false)
+                .build());
+    }
+
+    public Product product(String name, double stockKg) {
+        return productRepository.save(Product.builder()
+                .name(name + " " + UUID.randomUUID().toString().substring(0, 8))
+                .retailPricePerKg(new BigDecimal("40.00"))
+                .wholesalePricePerKg(new BigDecimal("32.00"))
+                .minWholesaleQuantityKg(10.0)
+                .stockKg(stockKg)
+                .category("Test")
+                .build());
+    }
+
+    public double stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStockKg();
+    }
+}
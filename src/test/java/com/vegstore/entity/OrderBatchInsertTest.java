@@ -0,0 +1,105 @@
+package com.vegstore.entity;
+
+import com.vegstore.TestData;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements needed to insert a 40-line order. Sequence IDs let Hibernate batch the item inserts;
+ * running the same insert with batching switched off for the session shows the per-row cost that
+ * IDENTITY keys forced.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j(topic = "benchmark")
+class OrderBatchInsertTest {
+
+    private static final int LINES = 40;
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User customer;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        TestData data = new TestData(productRepository, userRepository);
+        customer = data.customer();
+        for (int i = 0; i < LINES; i++) {
+            products.add(data.product("Vegetable", 100.0));
+        }
+    }
+
+    @Test
+    void orderItemsAreInsertedInBatches() {
+        long unbatched = statementsToInsertOrder(1);
+        long batched = statementsToInsertOrder(null);
+
+        log.info("statements per {}-line order: {} unbatched, {} batched", LINES, unbatched, batched);
+        // One INSERT per row without batching; with it one per table, plus at most a sequence call each
+        assertThat(unbatched).isGreaterThanOrEqualTo(LINES + 1);
+        assertThat(batched).isLessThanOrEqualTo(4);
+    }
+
+    // Prepared statements for persisting one order, with the session's JDBC batch size overridden
+    // (null keeps the configured size); the insert is rolled back
+    private long statementsToInsertOrder(Integer batchSize) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            User orderCustomer = entityManager.getReference(User.class, customer.getId());
+            Order order = Order.builder()
+                    .customer(orderCustomer)
+                    .customerName("Test Customer")
+                    .customerPhone("9999999999")
+                    .deliveryAddress("1 Test Street")
+                    .paymentMethod("COD")
+                    .totalAmount(BigDecimal.ZERO)
+                    .build();
+            for (Product product : products) {
+                order.addOrderItem(OrderItem.builder()
+                        .product(entityManager.getReference(Product.class, product.getId()))
+                        .quantityKg(1.0)
+                        .pricePerKgAtTimeOfOrder(product.getRetailPricePerKg())
+                        .subtotal(product.getRetailPricePerKg())
+                        .build());
+            }
+
+            long before = statistics.getPrepareStatementCount();
+            entityManager.persist(order);
+            entityManager.flush();
+            long statements = statistics.getPrepareStatementCount() - before;
+            status.setRollbackOnly();
+            return statements;
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.vegstore.repository;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Cart;
+import com.vegstore.entity.CartItem;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CartRepositoryTest {
+
+    private static final int LINES = 300;
+
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void cartWithItemsAndProductsLoadsInOneSelect() {
+        TestData data = new TestData(productRepository, userRepository);
+        User customer = data.customer();
+        Cart cart = Cart.builder().user(customer).build();
+        for (int i = 0; i < LINES; i++) {
+            Product product = data.product("Vegetable", 100.0);
+            cart.addItem(CartItem.builder().product(product).quantity(1.0).priceAtTime(40.0).build());
+        }
+        cartRepository.save(cart);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long statements = tx.execute(status -> {
+            long before = statistics.getPrepareStatementCount();
+            Cart loaded = cartRepository.findWithItemsByUserId(customer.getId()).orElseThrow();
+            // Touch every line and product, and the by-product index, as the cart pages do
+            double total = 0;
+            for (CartItem item : loaded.getItems()) {
+                total += item.getQuantity() * item.getProduct().getRetailPricePerKg().doubleValue();
+                assertThat(loaded.findItem(item.getProduct().getId())).isSameAs(item);
+            }
+            assertThat(loaded.getItems()).hasSize(LINES);
+            assertThat(total).isEqualTo(LINES * 40.0);
+            return statistics.getPrepareStatementCount() - before;
+        });
+
+        assertThat(statements).isEqualTo(1);
+    }
+}
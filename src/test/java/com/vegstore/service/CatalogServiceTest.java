@@ -0,0 +1,174 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Catalog pages are served from the in-memory snapshot without queries, and stock taken by
+ * checkouts reaches the snapshot through the publisher thread.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j(topic = "benchmark")
+class CatalogServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private CatalogService catalogService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    void catalogPagesRunNoQueries() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).apply(springSecurity()).build();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (String page : List.of("/", "/products")) {
+            for (int i = 0; i < 50; i++) {
+                mockMvc.perform(get(page)).andExpect(status().isOk());
+            }
+            int requests = 500;
+            long before = statistics.getPrepareStatementCount();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                mockMvc.perform(get(page)).andExpect(status().isOk());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long statements = statistics.getPrepareStatementCount() - before;
+
+            log.info("catalog {} {} anonymous requests: {} requests/s, {} statements",
+                    page, requests, Math.round(requests / seconds), statements);
+            assertThat(statements).isZero();
+        }
+    }
+
+    @Test
+    void checkoutStockReachesTheSnapshot() {
+        Product beans = data.product("Beans", 3.0);
+        User customer = data.customer();
+
+        place(customer, beans, 3.0);
+
+        CatalogProduct soldOut = awaitProduct(beans, product -> product.getStockKg() == 0.0);
+        assertThat(catalogService.getAllProducts()).contains(soldOut);
+        assertThat(catalogService.getAvailableProducts()).extracting(CatalogProduct::getId).doesNotContain(beans.getId());
+        assertThat(catalogService.getAllProducts()).isSortedAccordingTo((a, b) -> Long.compare(a.getId(), b.getId()));
+    }
+
+    // Timing, and coalescing that depends on scheduling: run with -Pbenchmark
+    @Test
+    @Tag("benchmark")
+    void refreshLatencyAndCoalescing() throws Exception {
+        Product peas = data.product("Peas", 10_000.0);
+        User customer = data.customer();
+        place(customer, peas, 1.0);
+        awaitProduct(peas, product -> product.getStockKg() == 9_999.0);
+
+        // Time from a committed checkout to its stock being visible in the snapshot
+        long[] nanos = new long[100];
+        for (int i = 0; i < nanos.length; i++) {
+            double expected = data.stockOf(peas) - 1.0;
+            place(customer, peas, 1.0);
+            long start = System.nanoTime();
+            awaitProduct(peas, product -> product.getStockKg() == expected);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        log.info("catalog refresh after checkout: p50 {} ms, p99 {} ms",
+                String.format("%.2f", nanos[49] / 1e6), String.format("%.2f", nanos[98] / 1e6));
+
+        // A burst of checkouts on one product is applied in fewer refreshes than there are orders
+        int orders = 200;
+        double expected = data.stockOf(peas) - orders;
+        long versionBefore = catalogService.snapshot().version();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < orders; i++) {
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    place(customer, peas, 1.0);
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        awaitProduct(peas, product -> product.getStockKg() == expected);
+        long refreshes = catalogService.snapshot().version() - versionBefore;
+
+        log.info("catalog burst: {} checkouts on {} threads published in {} snapshots", orders, THREADS, refreshes);
+        assertThat(refreshes).isLessThan(orders);
+    }
+
+    private void place(User customer, Product product, double kg) {
+        orderService.createOrder(customer, Map.of(product.getId(), kg), "Test Customer", "9999999999",
+                "1 Test Street", "Vijayawada", "520010", null, "COD");
+    }
+
+    // Waits for the publisher thread to make the product match
+    private CatalogProduct awaitProduct(Product product, Predicate<CatalogProduct> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            CatalogProduct current = catalogService.snapshot().byId().get(product.getId());
+            if (current != null && condition.test(current)) {
+                return current;
+            }
+            assertThat(System.nanoTime()).as("catalog snapshot never caught up").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Large baskets at checkout: stock rows locked in product-ID order, and latency by basket size. */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j(topic = "benchmark")
+class CheckoutBasketTest {
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    void overlappingBasketsInOppositeOrderDoNotDeadlock() throws Exception {
+        int rounds = 30;
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            products.add(data.product("Vegetable", 1000.0));
+        }
+        // Same products, added to the two carts in opposite orders
+        Map<Long, Double> ascending = new LinkedHashMap<>();
+        Map<Long, Double> descending = new LinkedHashMap<>();
+        for (int i = 0; i < products.size(); i++) {
+            ascending.put(products.get(i).getId(), 1.0);
+            descending.put(products.get(products.size() - 1 - i).getId(), 1.0);
+        }
+        User first = data.customer();
+        User second = data.customer();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (Map.Entry<User, Map<Long, Double>> basket : Map.of(first, ascending, second, descending).entrySet()) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < rounds; round++) {
+                        place(basket.getKey(), basket.getValue());
+                    }
+                    return rounds;
+                }));
+            }
+            start.countDown();
+            // A deadlock would surface here as a failed order or a lock timeout
+            for (Future<Integer> result : results) {
+                assertThat(result.get(120, TimeUnit.SECONDS)).isEqualTo(rounds);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Product product : products) {
+            assertThat(data.stockOf(product)).isEqualTo(1000.0 - 2 * rounds);
+        }
+    }
+
+    // Timing only, nothing to assert: run with -Pbenchmark
+    @Test
+    @Tag("benchmark")
+    void checkoutLatencyByBasketSize() {
+        User customer = data.customer();
+        for (int lines : new int[]{1, 10, 50}) {
+            Map<Long, Double> basket = new LinkedHashMap<>();
+            for (int i = 0; i < lines; i++) {
+                basket.put(data.product("Vegetable", 10_000.0).getId(), 1.0);
+            }
+            for (int i = 0; i < 10; i++) {
+                place(customer, basket);
+            }
+
+            long[] nanos = new long[100];
+            for (int i = 0; i < nanos.length; i++) {
+                long start = System.nanoTime();
+                place(customer, basket);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            log.info("checkout {} lines: p50 {} ms, p99 {} ms",
+                    lines, String.format("%.2f", nanos[49] / 1e6), String.format("%.2f", nanos[98] / 1e6));
+        }
+    }
+
+    private void place(User customer, Map<Long, Double> basket) {
+        orderService.createOrder(customer, basket, "Test Customer", "9999999999", "1 Test Street",
+                "Vijayawada", "520010", null, "COD");
+    }
+}
@@ -0,0 +1,99 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Order;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.CommissionLedgerRepository;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A rebuild racing live completions must neither drop a completion committed after its aggregate
+ * nor count one twice whose after-commit accrual lands while it runs.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CommissionLedgerServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private CommissionLedgerService commissionLedgerService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private CommissionLedgerRepository ledgerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    void rebuildDuringCompletionsStaysConsistent() throws Exception {
+        Product gourd = data.product("Gourd", 10_000.0);
+        User customer = data.customer();
+        User salesperson = userRepository.save(User.builder()
+                .username("sales-" + UUID.randomUUID())
+                .password("{noop}secret")
+                .fullName("Test Salesperson")
+                .role(User.Role.SALESPERSON)
+                .isWholesale(false)
+                .build());
+        List<Long> orderIds = new ArrayList<>();
+        BigDecimal revenue = BigDecimal.ZERO;
+        for (int i = 0; i < 300; i++) {
+            Order order = orderService.createOrder(customer, Map.of(gourd.getId(), 1.0), "Test Customer",
+                    "9999999999", "1 Test Street", "Vijayawada", "520010", null, "COD");
+            orderService.claimOrder(order.getId(), salesperson);
+            orderIds.add(order.getId());
+            revenue = revenue.add(order.getTotalAmount());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long orderId : orderIds) {
+                futures.add(executor.submit(() -> orderService.updateOrderStatus(orderId, Order.OrderStatus.COMPLETED)));
+            }
+            while (!futures.stream().allMatch(Future::isDone)) {
+                commissionLedgerService.rebuild();
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(commissionLedgerService.verify()).containsEntry("consistent", true);
+        // And so does the table once the accruals made since the last rebuild are flushed
+        commissionLedgerService.flush();
+        assertThat(ledgerRepository.findById(salesperson.getId()).orElseThrow().getCompletedRevenuePaise())
+                .isEqualTo(revenue.movePointRight(2).longValueExact());
+    }
+}
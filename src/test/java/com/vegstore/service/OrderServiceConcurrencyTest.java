@@ -0,0 +1,138 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.OrderRepository;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Stock reservation under concurrent checkouts: the conditional decrement must never oversell or
+ * lose an update, however many checkouts race for the same product.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j(topic = "benchmark")
+class OrderServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    void conditionalDecrementNeverTakesMoreThanTheStock() throws Exception {
+        Product onions = data.product("Onions", 100.0);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 100 decrements of 2.5 kg against 100 kg: exactly 40 fit
+        List<Integer> results = runConcurrently(100, () ->
+                tx.execute(status -> productRepository.decrementStockIfAvailable(onions.getId(), 2.5)));
+
+        assertThat(results.stream().filter(updated -> updated == 1).count()).isEqualTo(40);
+        assertThat(results.stream().filter(updated -> updated == 0).count()).isEqualTo(60);
+        assertThat(data.stockOf(onions)).isZero();
+    }
+
+    @Test
+    void parallelCheckoutsConserveStock() throws Exception {
+        int checkouts = 200;
+        Product tomatoes = data.product("Tomatoes", 150.0);
+        User customer = data.customer();
+        long ordersBefore = orderRepository.count();
+
+        long start = System.nanoTime();
+        List<Boolean> placed = runConcurrently(checkouts, () -> {
+            try {
+                orderService.createOrder(customer, Map.of(tomatoes.getId(), 1.0), "Test Customer", "9999999999",
+                        "1 Test Street", "Vijayawada", "520010", null, "COD");
+                return true;
+            } catch (RuntimeException e) {
+                assertThat(e.getMessage()).contains("Insufficient stock");
+                return false;
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long succeeded = placed.stream().filter(Boolean::booleanValue).count();
+        assertThat(succeeded).isEqualTo(150);
+        assertThat(data.stockOf(tomatoes)).isZero();
+        assertThat(orderRepository.count() - ordersBefore).isEqualTo(150);
+        log.info("checkout: {} parallel checkouts on one product, {} threads: {} checkouts/s",
+                checkouts, THREADS, Math.round(checkouts / seconds));
+    }
+
+    @Test
+    void lineWithoutStockRollsBackTheWholeOrder() {
+        Product carrots = data.product("Carrots", 50.0);
+        Product okra = data.product("Okra", 1.0);
+        User customer = data.customer();
+
+        assertThatThrownBy(() -> orderService.createOrder(customer, Map.of(carrots.getId(), 5.0, okra.getId(), 2.0),
+                "Test Customer", "9999999999", "1 Test Street", "Vijayawada", "520010", null, "COD"))
+                .hasMessageContaining("Insufficient stock");
+
+        assertThat(data.stockOf(carrots)).isEqualTo(50.0);
+        assertThat(data.stockOf(okra)).isEqualTo(1.0);
+    }
+
+    // Runs the task the given number of times on THREADS threads, all released at once
+    private <T> List<T> runConcurrently(int times, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < times; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.Supplier;
+import com.vegstore.entity.User;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.SupplierRepository;
+import com.vegstore.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Profit analysis at 10k, 100k and 1M order items: the same three aggregate queries however many
+ * items there are. The orders are inserted over JDBC in one transaction that is rolled back.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j(topic = "benchmark")
+class ProfitAnalysisServiceTest {
+
+    private static final int PRODUCTS = 50;
+    private static final int LINES_PER_ORDER = 10;
+    private static final int BATCH = 10_000;
+    // Well above anything the sequences hand out, and rolled back anyway
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    @Autowired
+    private ProfitAnalysisService profitAnalysisService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void profitAnalysisAtScale() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(data.product("Vegetable", 1000.0));
+        }
+        User customer = data.customer();
+        Supplier supplier = supplierRepository.save(Supplier.builder()
+                .name("Bench Supplier")
+                .contactPerson("Bench Contact")
+                .phone("9999999999")
+                .email("bench@example.com")
+                .build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            Map<String, BigDecimal> baseline = cold();
+            insertPurchases(products, supplier);
+
+            int inserted = 0;
+            for (int items : new int[]{10_000, 100_000, 1_000_000}) {
+                insertOrderItems(customer, products, inserted, items);
+                inserted = items;
+
+                long[] nanos = new long[5];
+                long statements = 0;
+                Map<String, BigDecimal> analysis = null;
+                for (int i = 0; i < nanos.length; i++) {
+                    long before = statistics.getPrepareStatementCount();
+                    long start = System.nanoTime();
+                    analysis = cold();
+                    nanos[i] = System.nanoTime() - start;
+                    statements = statistics.getPrepareStatementCount() - before;
+                }
+                Arrays.sort(nanos);
+
+                // Every item is 1 kg at 40.00 bought at 25.00; the orders are pending, so no salary
+                assertThat(analysis.get("revenue").subtract(baseline.get("revenue")))
+                        .isEqualByComparingTo(BigDecimal.valueOf(40L * items));
+                assertThat(analysis.get("cogs").subtract(baseline.get("cogs")))
+                        .isEqualByComparingTo(BigDecimal.valueOf(25L * items));
+                assertThat(statements).isEqualTo(3);
+                log.info("profit analysis over {} order items: median {} ms, {} statements",
+                        items, String.format("%.1f", nanos[2] / 1e6), statements);
+            }
+
+            // The last cold computation was cached; until the next write a read is a map lookup
+            long before = statistics.getPrepareStatementCount();
+            long start = System.nanoTime();
+            profitAnalysisService.getProfitAnalysis(null, null);
+            long nanos = System.nanoTime() - start;
+            assertThat(statistics.getPrepareStatementCount() - before).isZero();
+            log.info("profit analysis cached read: {} ms", String.format("%.3f", nanos / 1e6));
+        });
+        // Nothing computed over the rolled-back rows may outlive the transaction
+        profitAnalysisService.invalidate();
+    }
+
+    // Computed afresh, as the first read after an order or purchase write is
+    private Map<String, BigDecimal> cold() {
+        profitAnalysisService.invalidate();
+        return profitAnalysisService.getProfitAnalysis(null, null);
+    }
+
+    private void insertPurchases(List<Product> products, Supplier supplier) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("INSERT INTO purchases (id, supplier_id, product_id, quantity_kg, cost_per_kg, " +
+                "total_amount, purchase_date) VALUES (?, ?, ?, 1000, 25.00, 25000.00, ?)", products, products.size(),
+                (statement, product) -> {
+                    statement.setLong(1, FIRST_ID + product.getId());
+                    statement.setLong(2, supplier.getId());
+                    statement.setLong(3, product.getId());
+                    statement.setTimestamp(4, now);
+                });
+    }
+
+    // Items [from, to), LINES_PER_ORDER to an order, one kg each of the products in turn
+    private void insertOrderItems(User customer, List<Product> products, int from, int to) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Integer> orders = new ArrayList<>();
+        List<Integer> items = new ArrayList<>();
+        for (int item = from; item < to; item++) {
+            if (item % LINES_PER_ORDER == 0) {
+                orders.add(item / LINES_PER_ORDER);
+            }
+            items.add(item);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO orders (id, customer_id, customer_name, customer_phone, " +
+                "delivery_address, city, pincode, total_amount, payment_method, status, created_at, updated_at) " +
+                "VALUES (?, ?, 'Bench Customer', '9999999999', '1 Test Street', 'Vijayawada', '520010', ?, 'COD', " +
+                "'PENDING', ?, ?)", orders, BATCH, (statement, order) -> {
+                    statement.setLong(1, FIRST_ID + order);
+                    statement.setLong(2, customer.getId());
+                    statement.setBigDecimal(3, BigDecimal.valueOf(40L * LINES_PER_ORDER));
+                    statement.setTimestamp(4, now);
+                    statement.setTimestamp(5, now);
+                });
+        jdbcTemplate.batchUpdate("INSERT INTO order_items (id, order_id, product_id, quantity_kg, " +
+                "price_per_kg_at_time_of_order, subtotal) VALUES (?, ?, ?, 1.0, 40.00, 40.00)", items, BATCH,
+                (statement, item) -> {
+                    statement.setLong(1, FIRST_ID + item);
+                    statement.setLong(2, FIRST_ID + item / LINES_PER_ORDER);
+                    statement.setLong(3, products.get(item % products.size()).getId());
+                });
+    }
+}
@@ -0,0 +1,74 @@
+package com.vegstore.service;
+
+import com.vegstore.TestData;
+import com.vegstore.entity.Product;
+import com.vegstore.entity.User;
+import com.vegstore.repository.ProductRepository;
+import com.vegstore.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A rebuild racing live checkouts must neither drop an order committed after its recompute nor
+ * count one twice whose after-commit delta lands while it runs.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SalesRollupServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(productRepository, userRepository);
+    }
+
+    @Test
+    void rebuildDuringCheckoutsStaysConsistent() throws Exception {
+        Product okra = data.product("Okra", 10_000.0);
+        User customer = data.customer();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                futures.add(executor.submit(() -> orderService.createOrder(customer, Map.of(okra.getId(), 1.0),
+                        "Test Customer", "9999999999", "1 Test Street", "Vijayawada", "520010", null, "COD")));
+            }
+            while (!futures.stream().allMatch(Future::isDone)) {
+                salesRollupService.rebuild();
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(salesRollupService.verify()).containsEntry("consistent", true);
+    }
+}